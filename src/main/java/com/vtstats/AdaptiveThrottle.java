@@ -0,0 +1,174 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces VtStats background work by the server's tick time. Once a second the average MSPT is sampled:
+ * above {@code performance.throttle.backoff-mspt} the number of concurrent workers and the disk rate are
+ * halved, below {@code idle-mspt} they grow again step by step, always within the configured floor and ceiling.
+ * Background threads call {@link #acquire}/{@link #release} around each unit of work and {@link #consume}
+ * for the bytes they read or write. The main thread is never throttled.
+ */
+public class AdaptiveThrottle {
+
+    private static final long SAMPLE_TICKS = 20;
+
+    private final VtStats plugin;
+    private final Object lock = new Object();
+    private final AtomicLong windowBytes = new AtomicLong();
+    private BukkitTask sampler;
+    private long windowStart;
+
+    private volatile boolean enabled;
+    private volatile double mspt;
+    private double backoffMspt;
+    private double idleMspt;
+    private int minWorkers;
+    private int maxWorkers;
+    private long minBytesPerSecond;
+    private long maxBytesPerSecond;
+
+    // Guarded by lock; a rate of 0 means unlimited.
+    private int workerLimit;
+    private int activeWorkers;
+    private long bytesPerSecond;
+    private long nextFreeNanos;
+
+    public AdaptiveThrottle(VtStats plugin) {
+        this.plugin = plugin;
+        loadSettings();
+    }
+
+    /**
+     * Applies the current settings and resets the limits to their ceilings.
+     */
+    public void loadSettings() {
+        PluginSettings settings = plugin.getSettings();
+        synchronized (lock) {
+            enabled = settings.isThrottleEnabled();
+            backoffMspt = settings.getThrottleBackoffMspt();
+            idleMspt = Math.min(settings.getThrottleIdleMspt(), backoffMspt);
+            maxWorkers = settings.getThrottleMaxWorkers() > 0 ? settings.getThrottleMaxWorkers() : Runtime.getRuntime().availableProcessors();
+            minWorkers = Math.max(1, Math.min(settings.getThrottleMinWorkers(), maxWorkers));
+            maxBytesPerSecond = settings.getThrottleMaxBytesPerSecond();
+            minBytesPerSecond = Math.max(1, settings.getThrottleMinBytesPerSecond());
+            workerLimit = maxWorkers;
+            bytesPerSecond = maxBytesPerSecond;
+            lock.notifyAll();
+        }
+        if (enabled && sampler == null) {
+            windowStart = System.nanoTime();
+            sampler = Bukkit.getScheduler().runTaskTimer(plugin, this::sample, SAMPLE_TICKS, SAMPLE_TICKS);
+        } else if (!enabled && sampler != null) {
+            sampler.cancel();
+            sampler = null;
+        }
+    }
+
+    private void sample() {
+        double current = Bukkit.getAverageTickTime();
+        mspt = current;
+        long now = System.nanoTime();
+        double seconds = Math.max(0.001, (now - windowStart) / 1e9);
+        long observed = (long) (windowBytes.getAndSet(0) / seconds);
+        windowStart = now;
+        synchronized (lock) {
+            if (current >= backoffMspt) {
+                workerLimit = Math.max(minWorkers, workerLimit / 2);
+                long base = bytesPerSecond > 0 ? bytesPerSecond : observed;
+                bytesPerSecond = Math.max(minBytesPerSecond, base / 2);
+            } else if (current <= idleMspt) {
+                workerLimit = Math.min(maxWorkers, workerLimit + 1);
+                if (bytesPerSecond > 0) {
+                    // A limit the workers did not even reach is lifted to the ceiling straight away.
+                    long raised = observed < bytesPerSecond / 2 ? maxBytesPerSecond : bytesPerSecond * 2;
+                    bytesPerSecond = maxBytesPerSecond > 0 ? Math.min(maxBytesPerSecond, raised) : raised;
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Blocks until fewer than the current worker limit are busy. Must be paired with {@link #release} when it
+     * returns true.
+     *
+     * @return false if the caller was not counted, because throttling is off or it is the main thread
+     */
+    public boolean acquire() throws InterruptedException {
+        if (!enabled || Bukkit.isPrimaryThread()) return false;
+        synchronized (lock) {
+            while (enabled && activeWorkers >= workerLimit) lock.wait();
+            activeWorkers++;
+        }
+        return true;
+    }
+
+    public void release() {
+        synchronized (lock) {
+            activeWorkers--;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Accounts for bytes read or written and sleeps as long as needed to keep to the current disk rate.
+     */
+    public void consume(long bytes) {
+        windowBytes.addAndGet(bytes);
+        if (!enabled || bytes <= 0 || Bukkit.isPrimaryThread()) return;
+        long wait;
+        synchronized (lock) {
+            if (bytesPerSecond <= 0) return;
+            long now = System.nanoTime();
+            long start = Math.max(now, nextFreeNanos);
+            nextFreeNanos = start + bytes * 1_000_000_000L / bytesPerSecond;
+            wait = start - now;
+        }
+        if (wait > 0) LockSupport.parkNanos(wait);
+    }
+
+    public double getMspt() {
+        return mspt;
+    }
+
+    public int getWorkerLimit() {
+        synchronized (lock) {
+            return workerLimit;
+        }
+    }
+
+    /**
+     * @return the current disk rate limit in bytes per second, or 0 if unlimited
+     */
+    public long getBytesPerSecond() {
+        synchronized (lock) {
+            return bytesPerSecond;
+        }
+    }
+
+    /**
+     * Stops sampling and releases every waiting worker.
+     */
+    public void shutdown() {
+        if (sampler != null) {
+            sampler.cancel();
+            sampler = null;
+        }
+        synchronized (lock) {
+            enabled = false;
+            lock.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * Server-wide summaries of one stat over every player with stats. A summary is computed by a fork-join
+ * scan that splits the players into chunks, summarises each chunk on its own and merges the results.
+ * Summaries are cached for {@code aggregate.cache-seconds}, and concurrent requests for the same stat
+ * share one scan.
+ */
+public class AggregateManager {
+
+    private static final int CHUNK_SIZE = 256;
+
+    private final VtStats plugin;
+    private final LangManager lang;
+    private final StatCatalog catalog;
+    private final StatsFileManager statsFiles;
+    private final Map<String, CompletableFuture<StatSummary>> summaries = new ConcurrentHashMap<>();
+
+    public AggregateManager(VtStats plugin, LangManager lang, StatCatalog catalog, StatsFileManager statsFiles) {
+        this.plugin = plugin;
+        this.lang = lang;
+        this.catalog = catalog;
+        this.statsFiles = statsFiles;
+    }
+
+    /**
+     * Runs {@code callback} on the main thread with the summary of the stat, from the cache if it is fresh
+     * enough. A typed stat without a qualifier is summarised as the sum of all its qualifiers.
+     * Must be called on the main thread.
+     *
+     * @throws StatQuery.ParseException if the stat is unknown
+     */
+    public void aggregate(String statKey, Consumer<StatSummary> callback) {
+        String key = statKey.toUpperCase();
+        StatQuery.Operand stat = StatQuery.compileStat(key, catalog);
+        long maxAge = plugin.getSettings().getAggregateCacheMillis();
+        CompletableFuture<StatSummary> future = summaries.compute(key, (k, cached) -> {
+            if (cached != null && (!cached.isDone() || isFresh(cached, maxAge))) return cached;
+            return scan(stat);
+        });
+        future.whenComplete((summary, error) -> Bukkit.getScheduler().runTask(plugin, () -> {
+            if (error != null) {
+                summaries.remove(key, future);
+                plugin.getLogger().warning("Could not aggregate " + key + ": " + error.getMessage());
+                return;
+            }
+            callback.accept(summary);
+        }));
+    }
+
+    private static boolean isFresh(CompletableFuture<StatSummary> done, long maxAge) {
+        if (done.isCompletedExceptionally()) return false;
+        return System.currentTimeMillis() - done.join().getComputedAt() <= maxAge;
+    }
+
+    private CompletableFuture<StatSummary> scan(StatQuery.Operand stat) {
+        Set<UUID> online = new HashSet<>();
+        for (Player player : Bukkit.getOnlinePlayers()) online.add(player.getUniqueId());
+        CompletableFuture<StatSummary> future = new CompletableFuture<>();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                Set<UUID> uuids = new LinkedHashSet<>(statsFiles.listStoredPlayers());
+                uuids.addAll(online);
+                StatSummary summary = plugin.getScanPool().invoke(new ScanTask(new ArrayList<>(uuids), 0, uuids.size(), online, stat));
+                summary.setComputedAt(System.currentTimeMillis());
+                future.complete(summary);
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    public void showAggregate(CommandSender sender, String statArg) {
+        try {
+            aggregate(statArg, summary -> {
+                long age = (System.currentTimeMillis() - summary.getComputedAt()) / 1000;
+                sender.sendMessage(lang.getPrefixedMessage("aggregate-header",
+                        "stat", statArg, "count", String.valueOf(summary.getCount()), "age", String.valueOf(age)));
+                sender.sendMessage(lang.getMessage("aggregate-totals",
+                        "sum", String.valueOf(summary.getSum()),
+                        "mean", String.format(Locale.ROOT, "%.2f", summary.getMean()),
+                        "min", String.valueOf(summary.getMin()),
+                        "max", String.valueOf(summary.getMax())));
+                sender.sendMessage(lang.getMessage("aggregate-quantiles",
+                        "p50", String.valueOf(summary.getQuantile(0.5)),
+                        "p90", String.valueOf(summary.getQuantile(0.9)),
+                        "p99", String.valueOf(summary.getQuantile(0.99))));
+            });
+        } catch (StatQuery.ParseException e) {
+            sender.sendMessage(lang.getPrefixedMessage("stat-not-found", "stat", statArg));
+        }
+    }
+
+    /**
+     * Summarises {@code uuids[from, to)}; ranges above {@link #CHUNK_SIZE} are split in half and merged.
+     */
+    private final class ScanTask extends RecursiveTask<StatSummary> {
+        private final List<UUID> uuids;
+        private final int from;
+        private final int to;
+        private final Set<UUID> online;
+        private final StatQuery.Operand stat;
+
+        private ScanTask(List<UUID> uuids, int from, int to, Set<UUID> online, StatQuery.Operand stat) {
+            this.uuids = uuids;
+            this.from = from;
+            this.to = to;
+            this.online = online;
+            this.stat = stat;
+        }
+
+        @Override
+        protected StatSummary compute() {
+            if (to - from > CHUNK_SIZE) {
+                int mid = (from + to) >>> 1;
+                ScanTask left = new ScanTask(uuids, from, mid, online, stat);
+                left.fork();
+                StatSummary right = new ScanTask(uuids, mid, to, online, stat).compute();
+                return left.join().merge(right);
+            }
+            StatSummary summary = new StatSummary();
+            for (int i = from; i < to; i++) {
+                UUID uuid = uuids.get(i);
+                try {
+                    StatHolder holder = online.contains(uuid) ? statsFiles.open(Bukkit.getOfflinePlayer(uuid)) : statsFiles.load(uuid);
+                    summary.add(stat.get(holder));
+                } catch (IOException e) {
+                    plugin.getLogger().warning("Could not read stats of " + uuid + " for an aggregate: " + e.getMessage());
+                }
+            }
+            return summary;
+        }
+    }
+}
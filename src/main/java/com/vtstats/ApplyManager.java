@@ -0,0 +1,306 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.command.CommandSender;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Applies operation files from the {@code apply} folder. Each line is {@code player, op, stat[:qualifier], value}
+ * where op is {@code set}, {@code add} or {@code reset}; fields may be separated by commas, semicolons or spaces
+ * and {@code #} starts a comment. The whole file is validated before anything is changed, operations are grouped
+ * by player, and each player's stats are loaded and saved once by a resumable job.
+ */
+public class ApplyManager {
+
+    private static final Pattern SEPARATOR = Pattern.compile("[,;\\s]+");
+    private static final int MAX_REPORTED_ERRORS = 10;
+    private static final int OP_SET = 0;
+    private static final int OP_ADD = 1;
+    private static final int OP_RESET = 2;
+
+    private final VtStats plugin;
+    private final LangManager lang;
+    private final LogManager logger;
+    private final StatCatalog catalog;
+    private final StatsFileManager statsFiles;
+    private final PlayerResolver players;
+    private final JobManager jobManager;
+    private final File applyFolder;
+
+    public ApplyManager(VtStats plugin, LangManager lang, LogManager logger, StatCatalog catalog, StatsFileManager statsFiles,
+                        PlayerResolver players, JobManager jobManager) {
+        this.plugin = plugin;
+        this.lang = lang;
+        this.logger = logger;
+        this.catalog = catalog;
+        this.statsFiles = statsFiles;
+        this.players = players;
+        this.jobManager = jobManager;
+        this.applyFolder = new File(plugin.getDataFolder(), "apply");
+        if (!applyFolder.exists()) {
+            applyFolder.mkdirs();
+        }
+        jobManager.registerType("apply", true, this::runApplyJob);
+    }
+
+    public List<String> listFiles() {
+        String[] names = applyFolder.list((dir, name) -> new File(dir, name).isFile());
+        if (names == null) return Collections.emptyList();
+        Arrays.sort(names);
+        return Arrays.asList(names);
+    }
+
+    /**
+     * Validates the file and reports what it would do; with {@code run} the file is then applied if it has no errors.
+     */
+    public void apply(CommandSender sender, String fileName, boolean run) {
+        File file = resolveFile(fileName);
+        if (file == null) {
+            sender.sendMessage(lang.getPrefixedMessage("apply-file-not-found", "file", fileName));
+            return;
+        }
+        if (run) {
+            logger.logAction(sender, "apply", "N/A", "file " + file.getName(), null);
+            Job job = jobManager.start(sender, "apply", Collections.singletonMap("file", file.getName()));
+            sender.sendMessage(lang.getPrefixedMessage("job-started", "id", String.valueOf(job.getId()), "type", job.getType()));
+            return;
+        }
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                Plan plan = parse(file);
+                List<String> messages = report(file, plan);
+                if (plan.errors == 0 && plan.operations > 0) {
+                    messages.add(lang.getPrefixedMessage("apply-dry-run-hint", "file", file.getName()));
+                }
+                send(sender, messages);
+            } catch (IOException e) {
+                send(sender, lang.getPrefixedMessage("apply-file-not-found", "file", fileName));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private File resolveFile(String fileName) {
+        File file = new File(applyFolder, fileName);
+        try {
+            if (!file.getCanonicalFile().getParentFile().equals(applyFolder.getCanonicalFile())) return null;
+        } catch (IOException e) {
+            return null;
+        }
+        return file.isFile() ? file : null;
+    }
+
+    private void runApplyJob(Job job) throws IOException, InterruptedException {
+        CommandSender sender = job.getSender();
+        File file = resolveFile(job.getParam("file"));
+        if (file == null) {
+            send(sender, lang.getPrefixedMessage("apply-file-not-found", "file", job.getParam("file")));
+            return;
+        }
+        Plan plan = parse(file);
+        if (plan.errors > 0) {
+            List<String> messages = report(file, plan);
+            messages.add(lang.getPrefixedMessage("apply-has-errors"));
+            send(sender, messages);
+            return;
+        }
+
+        List<UUID> uuids = new ArrayList<>(plan.ops.keySet());
+        Collections.sort(uuids);
+        job.setTotal(uuids.size());
+        for (int i = job.getPosition(); i < uuids.size(); i++) {
+            job.checkStopped();
+            UUID uuid = uuids.get(i);
+            job.lockPlayer(uuid);
+            try {
+                applyOps(sender, Bukkit.getOfflinePlayer(uuid), plan.ops.get(uuid));
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not apply " + file.getName() + " to " + uuid + ": " + e.getMessage());
+            } finally {
+                job.unlockPlayer(uuid);
+            }
+            job.advance();
+        }
+        send(sender, lang.getPrefixedMessage("apply-finished",
+                "file", file.getName(),
+                "ops", String.valueOf(plan.operations),
+                "players", String.valueOf(uuids.size())));
+    }
+
+    private void applyOps(CommandSender sender, OfflinePlayer player, OpList ops) throws IOException {
+        StatHolder holder = statsFiles.open(player);
+        for (int i = 0; i < ops.size; i++) {
+            int index = ops.data[i * 3];
+            int op = ops.data[i * 3 + 1];
+            int value = ops.data[i * 3 + 2];
+            int previous = holder.get(index);
+            int updated;
+            if (op == OP_ADD) {
+                updated = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, (long) previous + value));
+            } else if (op == OP_RESET) {
+                updated = 0;
+            } else {
+                updated = value;
+            }
+            holder.set(index, updated);
+            logger.logChange(sender, op == OP_RESET ? "reset" : "set", catalog.getKey(index), player, (long) previous, (long) updated);
+        }
+        statsFiles.save(holder);
+    }
+
+    private List<String> report(File file, Plan plan) {
+        List<String> messages = new ArrayList<>(plan.errorMessages.size() + 3);
+        messages.add(lang.getPrefixedMessage("apply-report",
+                "file", file.getName(),
+                "lines", String.valueOf(plan.lines),
+                "ops", String.valueOf(plan.operations),
+                "players", String.valueOf(plan.ops.size()),
+                "errors", String.valueOf(plan.errors)));
+        messages.addAll(plan.errorMessages);
+        if (plan.errors > plan.errorMessages.size()) {
+            messages.add(lang.getMessage("apply-more-errors", "count", String.valueOf(plan.errors - plan.errorMessages.size())));
+        }
+        return messages;
+    }
+
+    /**
+     * Sends from the main thread, queued behind any stat changes this file already handed to the applier.
+     */
+    private void send(CommandSender sender, String message) {
+        send(sender, Collections.singletonList(message));
+    }
+
+    private void send(CommandSender sender, List<String> messages) {
+        plugin.getMainThreadApplier().submit(() -> {
+            for (String message : messages) sender.sendMessage(message);
+        });
+    }
+
+    /**
+     * Streams the file once, validating every line against the catalog, protected stats and known players.
+     */
+    private Plan parse(File file) throws IOException, InterruptedException {
+        // Names are checked against the index, which is still being built right after startup.
+        players.awaitReady();
+        PluginSettings settings = plugin.getSettings();
+        Plan plan = new Plan();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                plan.lines++;
+                int comment = line.indexOf('#');
+                if (comment >= 0) line = line.substring(0, comment);
+                line = line.trim();
+                if (line.isEmpty()) continue;
+
+                String[] fields = SEPARATOR.split(line);
+                if (fields.length < 3 || fields.length > 4) {
+                    plan.error("apply-reason-format");
+                    continue;
+                }
+                UUID uuid = resolvePlayer(fields[0]);
+                if (uuid == null) {
+                    plan.error("apply-reason-player", "player", fields[0]);
+                    continue;
+                }
+                int op;
+                switch (fields[1].toLowerCase()) {
+                    case "set": op = OP_SET; break;
+                    case "add": op = OP_ADD; break;
+                    case "reset": op = OP_RESET; break;
+                    default:
+                        plan.error("apply-reason-op", "op", fields[1]);
+                        continue;
+                }
+                int index = catalog.indexOf(fields[2].toUpperCase());
+                if (index < 0) {
+                    plan.error("apply-reason-stat", "stat", fields[2]);
+                    continue;
+                }
+                if (settings.isProtected(index)) {
+                    plan.error("apply-reason-protected", "stat", fields[2]);
+                    continue;
+                }
+                int value = 0;
+                if (op != OP_RESET) {
+                    try {
+                        value = Integer.parseInt(fields.length == 4 ? fields[3] : "");
+                    } catch (NumberFormatException e) {
+                        plan.error("apply-reason-value", "value", fields.length == 4 ? fields[3] : "");
+                        continue;
+                    }
+                }
+                plan.ops.computeIfAbsent(uuid, k -> new OpList()).add(index, op, value);
+                plan.operations++;
+            }
+        }
+        return plan;
+    }
+
+    private UUID resolvePlayer(String field) {
+        if (field.length() == 36 && field.indexOf('-') > 0) {
+            try {
+                return UUID.fromString(field);
+            } catch (IllegalArgumentException ignored) {}
+        }
+        return players.getUniqueId(field);
+    }
+
+    private final class Plan {
+        private final Map<UUID, OpList> ops = new HashMap<>();
+        private final List<String> errorMessages = new ArrayList<>();
+        private int lines;
+        private int operations;
+        private int errors;
+
+        /**
+         * Counts an error on the current line; only the first few are rendered for the report.
+         */
+        private void error(String reasonPath, String... placeholders) {
+            if (errorMessages.size() < MAX_REPORTED_ERRORS) {
+                errorMessages.add(lang.getMessage("apply-error",
+                        "line", String.valueOf(lines),
+                        "reason", lang.getMessage(reasonPath, placeholders)));
+            }
+            errors++;
+        }
+    }
+
+    /**
+     * One player's operations in file order, packed as (catalog index, op, value) triples.
+     */
+    private static final class OpList {
+        private int[] data = new int[12];
+        private int size;
+
+        private void add(int index, int op, int value) {
+            if (size * 3 == data.length) data = Arrays.copyOf(data, data.length * 2);
+            data[size * 3] = index;
+            data[size * 3 + 1] = op;
+            data[size * 3 + 2] = value;
+            size++;
+        }
+    }
+}
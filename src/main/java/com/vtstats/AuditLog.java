@@ -0,0 +1,359 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Structured, append-only record of every logged action.
+ * <p>
+ * Records live in segment files {@code <first id>.vtaudit}. Each segment has a side index {@code .vtidx}
+ * of fixed-size entries (time, target UUID, stat index, record offset), one per record in id order, which
+ * is loaded into per-player and per-stat id lists at startup so history queries read only matching records.
+ * Records are written before their index entry, so a torn tail is detected and cut off on open.
+ */
+public class AuditLog {
+
+    public static final String EXTENSION = ".vtaudit";
+    public static final String INDEX_EXTENSION = ".vtidx";
+
+    private static final int INDEX_ENTRY_SIZE = 32;
+    private static final long MAX_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final UUID NO_TARGET = new UUID(0, 0);
+
+    private final File folder;
+    private final StatCatalog catalog;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final Map<UUID, IdList> byTarget = new HashMap<>();
+    private final Map<Integer, IdList> byStat = new HashMap<>();
+    private long nextId;
+
+    public AuditLog(File folder, StatCatalog catalog) throws IOException {
+        this.folder = folder;
+        this.catalog = catalog;
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+        File[] files = folder.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files != null) {
+            for (File file : files) {
+                try {
+                    long start = Long.parseLong(file.getName().substring(0, file.getName().length() - EXTENSION.length()));
+                    segments.put(start, new Segment(start));
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+        for (Segment segment : segments.values()) {
+            segment.load();
+            nextId = Math.max(nextId, segment.start + segment.count);
+        }
+    }
+
+    /**
+     * Appends a record. Called by the log writer thread only.
+     *
+     * @return the record's id
+     */
+    public long append(Record record) throws IOException {
+        Segment segment = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (segment == null || segment.dataSize >= MAX_SEGMENT_SIZE) {
+            segment = new Segment(nextId);
+            segment.open();
+            synchronized (this) {
+                segments.put(segment.start, segment);
+            }
+        }
+        byte[] body = record.encode();
+        ByteBuffer data = ByteBuffer.allocate(4 + body.length);
+        data.putInt(body.length).put(body).flip();
+        long offset = segment.dataSize;
+        writeFully(segment.data, data, offset);
+
+        int statIndex = record.stat != null ? catalog.indexOf(record.stat.toUpperCase()) : -1;
+        UUID target = record.target != null ? record.target : NO_TARGET;
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        entry.putLong(record.time).putLong(target.getMostSignificantBits()).putLong(target.getLeastSignificantBits())
+                .putInt(statIndex).putInt((int) offset).flip();
+        writeFully(segment.index, entry, (long) segment.count * INDEX_ENTRY_SIZE);
+
+        synchronized (this) {
+            long id = nextId++;
+            segment.dataSize = offset + 4 + body.length;
+            segment.count++;
+            addPostings(id, target, statIndex);
+            return id;
+        }
+    }
+
+    /**
+     * @return ids of the records about the player, oldest first
+     */
+    public synchronized long[] findByTarget(UUID target) {
+        IdList ids = byTarget.get(target);
+        return ids != null ? ids.toArray() : new long[0];
+    }
+
+    /**
+     * @return ids of the records about any of the catalog indices in {@code [from, to)}, oldest first
+     */
+    public synchronized long[] findByStat(int from, int to) {
+        IdList merged = new IdList();
+        for (int i = from; i < to; i++) {
+            IdList ids = byStat.get(i);
+            if (ids != null) merged.addAll(ids);
+        }
+        long[] result = merged.toArray();
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * @return the record, or null if no record has that id
+     */
+    public Record read(long id) throws IOException {
+        Segment segment;
+        synchronized (this) {
+            if (id < 0 || id >= nextId) return null;
+            Map.Entry<Long, Segment> floor = segments.floorEntry(id);
+            if (floor == null || id >= floor.getKey() + floor.getValue().count) return null;
+            segment = floor.getValue();
+        }
+        ByteBuffer entry = readFully(segment.index, (id - segment.start) * INDEX_ENTRY_SIZE, INDEX_ENTRY_SIZE);
+        long offset = entry.getInt(28) & 0xFFFFFFFFL;
+        int length = readFully(segment.data, offset, 4).getInt();
+        ByteBuffer body = readFully(segment.data, offset + 4, length);
+        Record record = Record.decode(body.array());
+        record.id = id;
+        return record;
+    }
+
+    /**
+     * Reads the records with the given ids, newest first, stopping at {@code limit} records or the first one older than {@code since}.
+     */
+    public List<Record> readNewest(long[] ids, long since, int limit) throws IOException {
+        List<Record> records = new ArrayList<>();
+        for (int i = ids.length - 1; i >= 0 && records.size() < limit; i--) {
+            Record record = read(ids[i]);
+            if (record == null) continue;
+            if (record.time < since) break;
+            records.add(record);
+        }
+        return records;
+    }
+
+    public synchronized void close() {
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    private void addPostings(long id, UUID target, int statIndex) {
+        if (!NO_TARGET.equals(target)) {
+            byTarget.computeIfAbsent(target, k -> new IdList()).add(id);
+        }
+        if (statIndex >= 0) {
+            byStat.computeIfAbsent(statIndex, k -> new IdList()).add(id);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new EOFException("Truncated audit segment");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private final class Segment {
+        private final long start;
+        private FileChannel data;
+        private FileChannel index;
+        private long dataSize;
+        private int count;
+
+        private Segment(long start) {
+            this.start = start;
+        }
+
+        private void open() throws IOException {
+            String base = String.format("%012d", start);
+            data = FileChannel.open(new File(folder, base + EXTENSION).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            index = FileChannel.open(new File(folder, base + INDEX_EXTENSION).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        private void load() throws IOException {
+            open();
+            long indexSize = index.size() - index.size() % INDEX_ENTRY_SIZE;
+            count = (int) (indexSize / INDEX_ENTRY_SIZE);
+            long end = 0;
+            for (long position = 0; position < indexSize; ) {
+                ByteBuffer chunk = readFully(index, position, (int) Math.min(INDEX_ENTRY_SIZE * 1024, indexSize - position));
+                for (int i = 0; i < chunk.limit(); i += INDEX_ENTRY_SIZE) {
+                    long id = start + (position + i) / INDEX_ENTRY_SIZE;
+                    UUID target = new UUID(chunk.getLong(i + 8), chunk.getLong(i + 16));
+                    addPostings(id, target, chunk.getInt(i + 24));
+                    end = chunk.getInt(i + 28) & 0xFFFFFFFFL;
+                }
+                position += chunk.limit();
+            }
+            if (count > 0) {
+                end += 4 + readFully(data, end, 4).getInt();
+            }
+            index.truncate(indexSize);
+            data.truncate(end);
+            dataSize = end;
+        }
+
+        private void close() {
+            try {
+                if (data != null) data.close();
+                if (index != null) index.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private static final class IdList {
+        private long[] ids = new long[4];
+        private int size;
+
+        private void add(long id) {
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        private void addAll(IdList other) {
+            for (int i = 0; i < other.size; i++) add(other.ids[i]);
+        }
+
+        private long[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+
+    /**
+     * One logged action. {@code target} is null for actions on every player; the values are null when unknown.
+     */
+    public static final class Record {
+        private long id = -1;
+        private final long time;
+        private final String actor;
+        private final String action;
+        private final String stat;
+        private final UUID target;
+        private final String targetName;
+        private final Long oldValue;
+        private final Long newValue;
+
+        public Record(long time, String actor, String action, String stat, UUID target, String targetName, Long oldValue, Long newValue) {
+            this.time = time;
+            this.actor = actor;
+            this.action = action;
+            this.stat = stat;
+            this.target = target;
+            this.targetName = targetName;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public String getActor() {
+            return actor;
+        }
+
+        public String getAction() {
+            return action;
+        }
+
+        public String getStat() {
+            return stat;
+        }
+
+        public UUID getTarget() {
+            return target;
+        }
+
+        public String getTargetName() {
+            return targetName;
+        }
+
+        public Long getOldValue() {
+            return oldValue;
+        }
+
+        public Long getNewValue() {
+            return newValue;
+        }
+
+        private byte[] encode() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(time);
+            out.writeUTF(actor);
+            out.writeUTF(action);
+            out.writeUTF(stat != null ? stat : "");
+            out.writeBoolean(target != null);
+            if (target != null) {
+                out.writeLong(target.getMostSignificantBits());
+                out.writeLong(target.getLeastSignificantBits());
+            }
+            out.writeUTF(targetName != null ? targetName : "");
+            out.writeBoolean(oldValue != null);
+            if (oldValue != null) out.writeLong(oldValue);
+            out.writeBoolean(newValue != null);
+            if (newValue != null) out.writeLong(newValue);
+            return bytes.toByteArray();
+        }
+
+        private static Record decode(byte[] body) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            long time = in.readLong();
+            String actor = in.readUTF();
+            String action = in.readUTF();
+            String stat = in.readUTF();
+            UUID target = in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+            String targetName = in.readUTF();
+            Long oldValue = in.readBoolean() ? in.readLong() : null;
+            Long newValue = in.readBoolean() ? in.readLong() : null;
+            return new Record(time, actor, action, stat.isEmpty() ? null : stat, target, targetName, oldValue, newValue);
+        }
+    }
+}
@@ -8,129 +8,612 @@
 package com.vtstats;
 
 import org.bukkit.Bukkit;
-import org.bukkit.Material;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.Statistic;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.YamlConfiguration;
-import org.bukkit.entity.EntityType;
-import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 public class BackupManager {
 
-    private final JavaPlugin plugin;
+    private final VtStats plugin;
     private final LangManager lang;
+    private final StatCatalog catalog;
+    private final StatsFileManager statsFiles;
+    private final MainThreadApplier applier;
+    private final JobManager jobManager;
     private final File backupRoot;
+    private final IncrementalBackupStore incrementalStore;
+    private final ChangeJournal journal;
+    private final MetricsManager metrics;
+    private final ForkJoinPool verifyPool;
+    private BukkitTask nightlyVerify;
 
-    private static final Statistic.Type SIMPLE_STAT_TYPE;
-
-    static {
-        Statistic.Type tempType;
-        try {
-            tempType = Statistic.Type.valueOf("UNTIMED");
-        } catch (IllegalArgumentException e) {
-            tempType = Statistic.Type.valueOf("UNTYPED");
-        }
-        SIMPLE_STAT_TYPE = tempType;
-    }
-
-    public BackupManager(JavaPlugin plugin, LangManager lang) {
+    public BackupManager(VtStats plugin, LangManager lang, StatCatalog catalog, StatsFileManager statsFiles,
+                         MainThreadApplier applier, JobManager jobManager, ChangeJournal journal) {
         this.plugin = plugin;
         this.lang = lang;
+        this.catalog = catalog;
+        this.statsFiles = statsFiles;
+        this.applier = applier;
+        this.jobManager = jobManager;
+        this.journal = journal;
+        this.metrics = plugin.getMetricsManager();
         this.backupRoot = new File(plugin.getDataFolder(), "backups");
         if (!backupRoot.exists()) {
             backupRoot.mkdirs();
         }
+        this.incrementalStore = new IncrementalBackupStore(backupRoot, catalog);
+        jobManager.registerType("backup", false, this::runBackupJob);
+        jobManager.registerType("restore", true, this::runRestoreJob);
+        jobManager.registerType("verify", false, this::runVerifyJob);
+        this.verifyPool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("VtStats-Verify-" + thread.getPoolIndex());
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        loadSettings();
+    }
+
+    /**
+     * Reschedules the nightly verification of all backups.
+     */
+    public void loadSettings() {
+        if (nightlyVerify != null) {
+            nightlyVerify.cancel();
+            nightlyVerify = null;
+        }
+        PluginSettings settings = plugin.getSettings();
+        if (!settings.isBackupVerifyNightly()) return;
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(settings.getBackupVerifyTime());
+        if (!next.isAfter(now.plusSeconds(1))) next = next.plusDays(1);
+        long ticks = Math.max(1, Duration.between(now, next).toMillis() / 50);
+        nightlyVerify = Bukkit.getScheduler().runTaskLater(plugin, () -> {
+            nightlyVerify = null;
+            if (!getBackupList().isEmpty()) {
+                jobManager.start(Bukkit.getConsoleSender(), "verify", Collections.singletonMap("backup", "all"));
+            }
+            loadSettings();
+        }, ticks);
+    }
+
+    public void shutdown() {
+        if (nightlyVerify != null) {
+            nightlyVerify.cancel();
+            nightlyVerify = null;
+        }
+        verifyPool.shutdownNow();
     }
 
     public void createBackup(CommandSender sender, Runnable onFinish) {
         sender.sendMessage(lang.getPrefixedMessage("backup-start"));
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            String timestamp = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date());
-            File backupDir = new File(backupRoot, timestamp);
+        Job job = jobManager.start(sender, "backup", Collections.emptyMap(), onFinish);
+        sender.sendMessage(lang.getPrefixedMessage("job-started", "id", String.valueOf(job.getId()), "type", job.getType()));
+    }
+
+    private void runBackupJob(Job job) throws IOException, InterruptedException {
+        CommandSender sender = job.getSender();
+        String timestamp = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date());
+        journal.markBackup(timestamp);
+        try {
+            writeBackup(job, timestamp);
+        } catch (IOException e) {
+            applier.submit(() -> sender.sendMessage(lang.getPrefixedMessage("backup-failed")));
+            throw e;
+        }
+
+        long start = metrics.start();
+        manageBackupLimit();
+        journal.compact(getBackupList());
+        metrics.record(MetricsManager.Metric.BACKUP_PRUNE, start);
+
+        applier.submit(() -> sender.sendMessage(lang.getPrefixedMessage("backup-success", "backup_name", timestamp)));
+    }
+
+    private void writeBackup(Job job, String timestamp) throws IOException, InterruptedException {
+        PluginSettings settings = plugin.getSettings();
+        String format = settings.getBackupFormat();
+        int compression = settings.getBackupCompression();
+        BackupWriter writer;
+        if ("yaml".equalsIgnoreCase(format)) {
+            writer = new YamlBackupWriter(new File(backupRoot, timestamp), catalog);
+        } else if ("binary".equalsIgnoreCase(format)) {
+            writer = new SnapshotWriter(new File(backupRoot, timestamp + SnapshotFormat.EXTENSION), catalog, compression);
+        } else {
+            writer = incrementalStore.createWriter(timestamp, compression);
+        }
+
+        BackupPipeline pipeline = new BackupPipeline(catalog, statsFiles, plugin.getThrottle(), plugin.getLogger(),
+                settings.getBackupWorkerThreads(), settings.getBackupQueueSize());
+        long progressInterval = settings.getBackupProgressIntervalMillis();
+        CommandSender sender = job.getSender();
+        boolean written = false;
+        try {
+            long start = metrics.start();
+            pipeline.run(Arrays.asList(Bukkit.getOfflinePlayers()), writer, job, (done, total) -> applier.submit(() -> sender.sendMessage(
+                    lang.getPrefixedMessage("backup-progress", "done", String.valueOf(done), "total", String.valueOf(total)))),
+                    progressInterval);
+            metrics.record(MetricsManager.Metric.BACKUP_COLLECT, start);
+            start = metrics.start();
+            writer.close();
+            metrics.record(MetricsManager.Metric.BACKUP_FINISH, start);
+            written = true;
+        } finally {
+            // Whatever went wrong, a partial backup must not count toward the limit or be offered for restore.
+            if (!written) writer.abort();
+        }
+    }
+
+    public void loadBackup(CommandSender sender, String backupName) {
+        loadBackup(sender, backupName, null, null);
+    }
 
-            if (!backupDir.mkdirs()) {
-                sender.sendMessage(lang.getPrefixedMessage("backup-failed"));
-                plugin.getLogger().severe("Could not create backup directory: " + backupDir.getPath());
+    /**
+     * Starts a job that checks one backup, or every backup for {@code all}, against its checksums.
+     */
+    public void verifyBackups(CommandSender sender, String target) {
+        if (!target.equalsIgnoreCase("all") && !hasBackup(target)) {
+            sender.sendMessage(lang.getPrefixedMessage("load-backup-not-found", "backup_name", target));
+            return;
+        }
+        Job job = jobManager.start(sender, "verify", Collections.singletonMap("backup", target));
+        sender.sendMessage(lang.getPrefixedMessage("job-started", "id", String.valueOf(job.getId()), "type", job.getType()));
+    }
+
+    /**
+     * Verifies the backups in parallel on the verification pool and reports them in order.
+     */
+    private void runVerifyJob(Job job) throws IOException, InterruptedException {
+        String target = job.getParam("backup");
+        List<String> names = target.equalsIgnoreCase("all") ? getBackupList() : Collections.singletonList(target);
+        job.setTotal(names.size());
+        List<Future<Verification>> results = new ArrayList<>(names.size());
+        for (String name : names) results.add(verifyPool.submit(() -> verify(name)));
+
+        CommandSender sender = job.getSender();
+        int failed = 0;
+        try {
+            for (Future<Verification> future : results) {
+                job.checkStopped();
+                Verification result = await(future);
+                if (!result.isIntact()) failed++;
+                applier.submit(() -> report(sender, result));
+                job.advance();
+            }
+        } finally {
+            for (Future<Verification> future : results) future.cancel(true);
+        }
+        String damaged = String.valueOf(failed);
+        applier.submit(() -> sender.sendMessage(lang.getPrefixedMessage("verify-finished",
+                "count", String.valueOf(names.size()), "damaged", damaged)));
+    }
+
+    private void report(CommandSender sender, Verification result) {
+        if (result.error != null) {
+            sender.sendMessage(lang.getPrefixedMessage("verify-failed", "backup_name", result.name, "error", result.error));
+        } else if (!result.damaged.isEmpty()) {
+            String players = result.damaged.stream().limit(5).map(UUID::toString).collect(Collectors.joining(", "));
+            sender.sendMessage(lang.getPrefixedMessage("verify-damaged", "backup_name", result.name,
+                    "count", String.valueOf(result.damaged.size()), "players", players));
+        } else {
+            sender.sendMessage(lang.getPrefixedMessage("verify-ok", "backup_name", result.name,
+                    "players", String.valueOf(result.players)));
+        }
+    }
+
+    private Verification verify(String backupName) {
+        try (BackupReader reader = openReader(backupName)) {
+            return new Verification(backupName, reader.getPlayerCount(), reader.verify(), null);
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().warning("Backup " + backupName + " failed verification: " + e.getMessage());
+            return new Verification(backupName, 0, Collections.emptyList(), String.valueOf(e.getMessage()));
+        }
+    }
+
+    private static Verification await(Future<Verification> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Restores a backup, optionally only for one player and/or one stat. A typed stat without a qualifier,
+     * e.g. {@code mine_block}, restores all of its qualifiers.
+     *
+     * @param target  the only player to restore, or null for everyone in the backup
+     * @param statArg the only stat to restore, or null for all of them
+     */
+    public void loadBackup(CommandSender sender, String backupName, OfflinePlayer target, String statArg) {
+        File backupDir = new File(backupRoot, backupName);
+        if (!isBinaryBackup(backupName) && (!backupDir.exists() || !backupDir.isDirectory())) {
+            sender.sendMessage(lang.getPrefixedMessage("load-backup-not-found", "backup_name", backupName));
+            return;
+        }
+        if (statArg != null && statRange(statArg) == null) {
+            sender.sendMessage(lang.getPrefixedMessage("stat-not-found", "stat", statArg));
+            return;
+        }
+
+        Map<String, String> params = new HashMap<>();
+        params.put("backup", backupName);
+        if (target != null) params.put("player", target.getUniqueId().toString());
+        if (statArg != null) params.put("stat", statArg);
+        if (target == null) {
+            sender.sendMessage(lang.getPrefixedMessage("load-backup-start", "backup_name", backupName));
+        }
+        Job job = jobManager.start(sender, "restore", params);
+        if (target == null) {
+            sender.sendMessage(lang.getPrefixedMessage("job-started", "id", String.valueOf(job.getId()), "type", job.getType()));
+        }
+    }
+
+    /**
+     * @return the catalog range {@code [first, end)} of a stat key or of all qualifiers of a statistic, or null
+     */
+    private int[] statRange(String statArg) {
+        String key = statArg.toUpperCase();
+        int index = catalog.indexOf(key);
+        if (index >= 0) return new int[]{index, index + 1};
+        if (key.indexOf(':') >= 0) return null;
+        try {
+            Statistic stat = Statistic.valueOf(key);
+            return new int[]{catalog.firstIndexOf(stat), catalog.endIndexOf(stat)};
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Brings every player's stats back to {@code until}: restores the newest backup started before that time,
+     * then replays the change journal from the backup's start up to {@code until}.
+     */
+    public void restoreToTime(CommandSender sender, long until, String timeText) {
+        if (!journal.isEnabled()) {
+            sender.sendMessage(lang.getPrefixedMessage("restore-journal-disabled"));
+            return;
+        }
+        String best = null;
+        long bestStart = -1;
+        for (String name : getBackupList()) {
+            long start = backupStart(name);
+            if (start >= 0 && start <= until && start > bestStart) {
+                best = name;
+                bestStart = start;
+            }
+        }
+        if (best == null) {
+            sender.sendMessage(lang.getPrefixedMessage("restore-no-backup", "time", timeText));
+            return;
+        }
+        Map<String, String> params = new HashMap<>();
+        params.put("backup", best);
+        params.put("until", String.valueOf(until));
+        params.put("time", timeText);
+        sender.sendMessage(lang.getPrefixedMessage("restore-start", "backup_name", best, "time", timeText));
+        Job job = jobManager.start(sender, "restore", params);
+        sender.sendMessage(lang.getPrefixedMessage("job-started", "id", String.valueOf(job.getId()), "type", job.getType()));
+    }
+
+    /**
+     * @return when the backup started, from its journal checkpoint or else its name, or -1 if unknown
+     */
+    private long backupStart(String backupName) {
+        long checkpoint = journal.getCheckpoint(backupName);
+        if (checkpoint >= 0) return checkpoint;
+        try {
+            return new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").parse(backupName).getTime();
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    private void runRestoreJob(Job job) throws IOException, InterruptedException {
+        String backupName = job.getParam("backup");
+        String statArg = job.getParam("stat");
+        int[] range = statArg != null ? statRange(statArg) : null;
+        CommandSender sender = job.getSender();
+        if (job.getParam("player") != null) {
+            restoreOnePlayer(job, backupName, UUID.fromString(job.getParam("player")), statArg, range);
+            return;
+        }
+        String until = job.getParam("until");
+        if (until != null && job.getPosition() == 0) {
+            List<long[]> gaps = journal.findGaps(backupStart(backupName), Long.parseLong(until));
+            if (!gaps.isEmpty()) {
+                long[] gap = gaps.get(0);
+                SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+                String time = job.getParam("time");
+                applier.submit(() -> sender.sendMessage(lang.getPrefixedMessage("restore-journal-gap",
+                        "from", format.format(new Date(gap[0])), "to", format.format(new Date(gap[1])), "time", time)));
+                return;
+            }
+        }
+        if (job.getPosition() == 0) {
+            long start = metrics.start();
+            Verification check = await(verifyPool.submit(() -> verify(backupName)));
+            metrics.record(MetricsManager.Metric.RESTORE_VERIFY, start);
+            if (check.error != null) {
+                applier.submit(() -> sender.sendMessage(lang.getPrefixedMessage("load-backup-corrupt",
+                        "backup_name", backupName, "error", check.error)));
                 return;
             }
+            if (!check.damaged.isEmpty()) {
+                applier.submit(() -> sender.sendMessage(lang.getPrefixedMessage("load-backup-damaged",
+                        "backup_name", backupName, "count", String.valueOf(check.damaged.size()))));
+            }
+        }
+        long start = metrics.start();
+        int failed;
+        if (isBinaryBackup(backupName)) {
+            failed = loadBinaryBackup(job, backupName, range);
+        } else {
+            failed = loadYamlBackup(job, new File(backupRoot, backupName), range);
+        }
+        metrics.record(MetricsManager.Metric.RESTORE_APPLY, start);
+        if (failed > 0) {
+            applier.submit(() -> sender.sendMessage(lang.getPrefixedMessage("load-backup-errors", "count", String.valueOf(failed))));
+        }
+        if (until == null) {
+            applier.submit(() -> sender.sendMessage(lang.getPrefixedMessage("load-backup-success", "backup_name", backupName)));
+            return;
+        }
+        start = metrics.start();
+        int replayed = replayJournal(job, backupStart(backupName), Long.parseLong(until));
+        metrics.record(MetricsManager.Metric.RESTORE_REPLAY, start);
+        String time = job.getParam("time");
+        applier.submit(() -> sender.sendMessage(lang.getPrefixedMessage("restore-success",
+                "backup_name", backupName, "time", time, "players", String.valueOf(replayed))));
+    }
 
-            manageBackupLimit();
+    /**
+     * Applies the last journaled value of every stat changed between {@code from} and {@code until}.
+     * Replaying is idempotent, so a resumed job simply replays again. The job checks for gaps before it starts;
+     * one that appears since is only reported, as the backup has already been restored.
+     *
+     * @return the number of players changed
+     */
+    private int replayJournal(Job job, long from, long until) throws IOException, InterruptedException {
+        List<long[]> gaps = new ArrayList<>();
+        Map<UUID, StatVector> changes = journal.collect(from, until, gaps);
+        if (!gaps.isEmpty()) {
+            plugin.getLogger().warning("Replaying the change journal across " + gaps.size()
+                    + " gap(s) of lost changes; the restored stats may miss some of them.");
+        }
+        List<UUID> uuids = new ArrayList<>(changes.keySet());
+        Collections.sort(uuids);
+        for (UUID uuid : uuids) {
+            job.checkStopped();
+            job.lockPlayer(uuid);
+            try {
+                StatHolder holder = statsFiles.open(Bukkit.getOfflinePlayer(uuid));
+                changes.get(uuid).forEach(holder::set);
+                statsFiles.save(holder);
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not replay the journal for player " + uuid + ": " + e.getMessage());
+            } finally {
+                job.unlockPlayer(uuid);
+            }
+        }
+        return uuids.size();
+    }
 
-            for (OfflinePlayer player : Bukkit.getOfflinePlayers()) {
-                File playerFile = new File(backupDir, player.getUniqueId() + ".yml");
-                YamlConfiguration playerData = new YamlConfiguration();
-                for (Statistic stat : Statistic.values()) {
-                    saveStat(playerData, player, stat);
-                }
-                try {
-                    playerData.save(playerFile);
-                } catch (Exception e) {
-                    plugin.getLogger().severe("Could not save backup for player " + player.getName());
+    /**
+     * Seeks straight to one player's record: a binary search of the backup index, then a read of that record only.
+     */
+    private void restoreOnePlayer(Job job, String backupName, UUID uuid, String statArg, int[] range)
+            throws IOException, InterruptedException {
+        job.setTotal(1);
+        CommandSender sender = job.getSender();
+        OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
+        String name = player.getName() != null ? player.getName() : uuid.toString();
+        boolean found;
+        job.lockPlayer(uuid);
+        try {
+            if (isBinaryBackup(backupName)) {
+                try (BackupReader reader = openBinaryBackup(backupName)) {
+                    int i = reader.find(uuid);
+                    found = i >= 0;
+                    if (found) restoreRecord(reader, i, player, range);
                 }
+            } else {
+                File playerFile = new File(new File(backupRoot, backupName), uuid + ".yml");
+                found = playerFile.isFile();
+                if (found) restoreYamlFile(playerFile, player, range);
             }
-            
-            sender.sendMessage(lang.getPrefixedMessage("backup-success").replace("{backup_name}", timestamp));
+        } finally {
+            job.unlockPlayer(uuid);
+        }
+        job.advance();
+        if (!found) {
+            applier.submit(() -> sender.sendMessage(lang.getPrefixedMessage("load-backup-player-missing",
+                    "backup_name", backupName, "player", name)));
+            return;
+        }
+        applier.submit(() -> sender.sendMessage(lang.getPrefixedMessage("load-backup-player-success",
+                "backup_name", backupName, "player", name, "stat", statArg != null ? statArg : "*")));
+    }
 
-            if (onFinish != null) {
-                Bukkit.getScheduler().runTask(plugin, onFinish);
-            }
+    private void restoreRecord(BackupReader reader, int i, OfflinePlayer player, int[] range) throws IOException {
+        StatHolder holder = statsFiles.open(player);
+        clearRange(holder, range);
+        reader.read(i, (index, value) -> {
+            if (range == null || (index >= range[0] && index < range[1])) holder.set(index, value);
         });
+        statsFiles.save(holder);
     }
 
-    public void loadBackup(CommandSender sender, String backupName) {
-        File backupDir = new File(backupRoot, backupName);
-        if (!backupDir.exists() || !backupDir.isDirectory()) {
-            sender.sendMessage(lang.getPrefixedMessage("load-backup-not-found").replace("{backup_name}", backupName));
-            return;
+    private void restoreYamlFile(File playerFile, OfflinePlayer player, int[] range) throws IOException {
+        YamlConfiguration playerData = YamlConfiguration.loadConfiguration(playerFile);
+        StatHolder holder = statsFiles.open(player);
+        clearRange(holder, range);
+        for (String statName : playerData.getKeys(true)) {
+            if (playerData.isConfigurationSection(statName)) continue;
+            int index = catalog.indexOf(statName.replace('.', ':'));
+            if (index >= 0 && (range == null || (index >= range[0] && index < range[1]))) {
+                holder.set(index, playerData.getInt(statName));
+            }
+        }
+        statsFiles.save(holder);
+    }
+
+    /**
+     * Backups leave out zero values, so restoring a single stat first zeroes it.
+     */
+    private static void clearRange(StatHolder holder, int[] range) {
+        if (range == null) return;
+        for (int i = range[0]; i < range[1]; i++) {
+            if (holder.get(i) != 0) holder.set(i, 0);
+        }
+    }
+
+    /**
+     * @return the number of players that could not be restored
+     */
+    private int loadYamlBackup(Job job, File backupDir, int[] range) throws InterruptedException {
+        File[] playerFiles = backupDir.listFiles((dir, name) -> name.endsWith(".yml"));
+        if (playerFiles == null) return 0;
+        int failed = 0;
+        Arrays.sort(playerFiles, Comparator.comparing(File::getName));
+        job.setTotal(playerFiles.length);
+
+        for (int i = job.getPosition(); i < playerFiles.length; i++) {
+            job.checkStopped();
+            File playerFile = playerFiles[i];
+            try {
+                UUID uuid = UUID.fromString(playerFile.getName().replace(".yml", ""));
+                OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
+                if (player.hasPlayedBefore() || player.isOnline()) {
+                    job.lockPlayer(uuid);
+                    try {
+                        restoreYamlFile(playerFile, player, range);
+                    } finally {
+                        job.unlockPlayer(uuid);
+                    }
+                }
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                failed++;
+                plugin.getLogger().warning("Could not load backup for file " + playerFile.getName() + ": " + e.getMessage());
+            }
+            job.advance();
         }
+        return failed;
+    }
 
-        sender.sendMessage(lang.getPrefixedMessage("load-backup-start").replace("{backup_name}", backupName));
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            File[] playerFiles = backupDir.listFiles((dir, name) -> name.endsWith(".yml"));
-            if (playerFiles == null) return;
+    private boolean isBinaryBackup(String backupName) {
+        return new File(backupRoot, backupName + SnapshotFormat.EXTENSION).isFile()
+                || new File(backupRoot, backupName + IncrementalBackupStore.EXTENSION).isFile();
+    }
+
+    /**
+     * @return true if a backup of either format has this name
+     */
+    public boolean hasBackup(String backupName) {
+        return isBinaryBackup(backupName) || (!backupName.equals("objects") && new File(backupRoot, backupName).isDirectory());
+    }
+
+    /**
+     * Opens a backup of any format for random access by player.
+     */
+    public BackupReader openReader(String backupName) throws IOException {
+        if (isBinaryBackup(backupName)) return openBinaryBackup(backupName);
+        return new YamlBackupReader(new File(backupRoot, backupName), catalog);
+    }
 
-            for (File playerFile : playerFiles) {
+    private BackupReader openBinaryBackup(String backupName) throws IOException {
+        File manifest = new File(backupRoot, backupName + IncrementalBackupStore.EXTENSION);
+        if (manifest.isFile()) return incrementalStore.openReader(manifest);
+        return new SnapshotReader(new File(backupRoot, backupName + SnapshotFormat.EXTENSION), catalog);
+    }
+
+    /**
+     * @return the number of players that could not be restored
+     */
+    private int loadBinaryBackup(Job job, String backupName, int[] range) throws IOException, InterruptedException {
+        int failed = 0;
+        try (BackupReader reader = openBinaryBackup(backupName)) {
+            job.setTotal(reader.getPlayerCount());
+            for (int i = job.getPosition(); i < reader.getPlayerCount(); i++) {
+                job.checkStopped();
+                UUID uuid = reader.getPlayer(i);
                 try {
-                    UUID uuid = UUID.fromString(playerFile.getName().replace(".yml", ""));
                     OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
                     if (player.hasPlayedBefore() || player.isOnline()) {
-                        YamlConfiguration playerData = YamlConfiguration.loadConfiguration(playerFile);
-                        for (String statName : playerData.getKeys(true)) {
-                            if (playerData.isConfigurationSection(statName)) continue;
-                            loadStatFromString(player, statName, playerData.getInt(statName));
+                        job.lockPlayer(uuid);
+                        try {
+                            restoreRecord(reader, i, player, range);
+                        } finally {
+                            job.unlockPlayer(uuid);
                         }
                     }
+                } catch (InterruptedException e) {
+                    throw e;
                 } catch (Exception e) {
-                    plugin.getLogger().warning("Could not load backup for file " + playerFile.getName() + ": " + e.getMessage());
+                    failed++;
+                    plugin.getLogger().warning("Could not load backup for player " + uuid + ": " + e.getMessage());
                 }
+                job.advance();
             }
-            Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage(lang.getPrefixedMessage("load-backup-success").replace("{backup_name}", backupName)));
-        });
+        }
+        return failed;
     }
 
     public List<String> getBackupList() {
-        File[] files = backupRoot.listFiles(File::isDirectory);
+        File[] files = listBackups();
         if (files == null) return Collections.emptyList();
-        return Arrays.stream(files).map(File::getName).sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        return Arrays.stream(files).map(BackupManager::backupName).sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+    }
+
+    private File[] listBackups() {
+        return backupRoot.listFiles(file -> (file.isDirectory() && !file.getName().equals("objects"))
+                || file.getName().endsWith(SnapshotFormat.EXTENSION)
+                || file.getName().endsWith(IncrementalBackupStore.EXTENSION));
+    }
+
+    private static String backupName(File file) {
+        String name = file.getName();
+        if (name.endsWith(SnapshotFormat.EXTENSION)) return name.substring(0, name.length() - SnapshotFormat.EXTENSION.length());
+        if (name.endsWith(IncrementalBackupStore.EXTENSION)) return name.substring(0, name.length() - IncrementalBackupStore.EXTENSION.length());
+        return name;
     }
 
     private void manageBackupLimit() {
-        int maxBackups = plugin.getConfig().getInt("backup.max-backups", 10);
+        int maxBackups = plugin.getSettings().getMaxBackups();
         if (maxBackups <= 0) return;
 
-        File[] backups = backupRoot.listFiles(File::isDirectory);
+        File[] backups = listBackups();
         if (backups != null && backups.length > maxBackups) {
             Arrays.sort(backups, Comparator.comparingLong(File::lastModified));
             for (int i = 0; i < backups.length - maxBackups; i++) {
                 deleteDirectory(backups[i]);
             }
         }
+
+        try {
+            int deleted = incrementalStore.collectGarbage();
+            if (deleted > 0) plugin.getLogger().info("Removed " + deleted + " unreferenced backup objects.");
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not clean up backup objects: " + e.getMessage());
+        }
     }
 
     private void deleteDirectory(File directory) {
@@ -143,47 +626,21 @@ public class BackupManager {
         directory.delete();
     }
 
-    private void saveStat(YamlConfiguration config, OfflinePlayer p, Statistic s) {
-        try {
-            Statistic.Type type = s.getType();
-            if (type == SIMPLE_STAT_TYPE) {
-                config.set(s.name(), p.getStatistic(s));
-            } else if (type == Statistic.Type.BLOCK || type == Statistic.Type.ITEM) {
-                for (Material m : Material.values()) {
-                    if ((type == Statistic.Type.BLOCK && m.isBlock()) || (type == Statistic.Type.ITEM && m.isItem())) {
-                        int value = p.getStatistic(s, m);
-                        if (value > 0) config.set(s.name() + "." + m.name(), value);
-                    }
-                }
-            } else if (type == Statistic.Type.ENTITY) {
-                for (EntityType et : EntityType.values()) {
-                    if (et.isAlive()) {
-                        int value = p.getStatistic(s, et);
-                        if (value > 0) config.set(s.name() + "." + et.name(), value);
-                    }
-                }
-            }
-        } catch (Exception ignored) {}
-    }
-    
-    private void loadStatFromString(OfflinePlayer p, String fullStatPath, int value) {
-        try {
-            String[] parts = fullStatPath.split("\\.");
-            Statistic s = Statistic.valueOf(parts[0]);
-            if (parts.length > 1) {
-                String qualifier = parts[1];
-                if (s.getType() == Statistic.Type.BLOCK || s.getType() == Statistic.Type.ITEM) {
-                    Material m = Material.matchMaterial(qualifier);
-                    if (m != null) p.setStatistic(s, m, value);
-                } else if (s.getType() == Statistic.Type.ENTITY) {
-                    EntityType et = EntityType.valueOf(qualifier);
-                    p.setStatistic(s, et, value);
-                }
-            } else {
-                if (s.getType() == SIMPLE_STAT_TYPE) {
-                    p.setStatistic(s, value);
-                }
-            }
-        } catch (Exception ignored) {}
+    private static final class Verification {
+        private final String name;
+        private final int players;
+        private final List<UUID> damaged;
+        private final String error;
+
+        private Verification(String name, int players, List<UUID> damaged, String error) {
+            this.name = name;
+            this.players = players;
+            this.damaged = damaged;
+            this.error = error;
+        }
+
+        private boolean isIntact() {
+            return error == null && damaged.isEmpty();
+        }
     }
 }
@@ -0,0 +1,161 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.OfflinePlayer;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Reads and encodes players on a pool of workers while the calling thread appends the finished
+ * records to the {@link BackupWriter} in player order. At most {@code queueSize} records are in
+ * flight, so memory use does not grow with the number of players.
+ */
+public class BackupPipeline {
+
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+
+    private final StatsFileManager statsFiles;
+    private final AdaptiveThrottle throttle;
+    private final Logger logger;
+    private final int workers;
+    private final int queueSize;
+    private final int[] simpleIndices;
+
+    public BackupPipeline(StatCatalog catalog, StatsFileManager statsFiles, AdaptiveThrottle throttle, Logger logger,
+                          int workers, int queueSize) {
+        this.statsFiles = statsFiles;
+        this.throttle = throttle;
+        this.logger = logger;
+        this.workers = workers > 0 ? workers : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.queueSize = Math.max(this.workers, queueSize);
+        int count = 0;
+        for (int i = 0; i < catalog.size(); i++) if (catalog.getQualifier(i) == null) count++;
+        this.simpleIndices = new int[count];
+        for (int i = 0, n = 0; i < catalog.size(); i++) if (catalog.getQualifier(i) == null) simpleIndices[n++] = i;
+    }
+
+    public void run(List<OfflinePlayer> players, BackupWriter writer, Job job, ProgressListener progress, long progressIntervalMillis)
+            throws IOException, InterruptedException {
+        job.setTotal(players.size());
+        ExecutorService pool = Executors.newFixedThreadPool(workers, workerFactory());
+        Deque<Future<EncodedRecord>> inFlight = new ArrayDeque<>(queueSize);
+        int done = 0;
+        long nextReport = System.currentTimeMillis() + progressIntervalMillis;
+        try {
+            for (OfflinePlayer player : players) {
+                job.checkStopped();
+                if (inFlight.size() >= queueSize) {
+                    append(writer, inFlight.poll());
+                    job.advance();
+                    nextReport = report(progress, ++done, players.size(), nextReport, progressIntervalMillis);
+                }
+                inFlight.add(pool.submit(() -> encode(player, writer, job)));
+            }
+            while (!inFlight.isEmpty()) {
+                job.checkStopped();
+                append(writer, inFlight.poll());
+                job.advance();
+                nextReport = report(progress, ++done, players.size(), nextReport, progressIntervalMillis);
+            }
+        } finally {
+            for (Future<EncodedRecord> future : inFlight) future.cancel(true);
+            pool.shutdownNow();
+        }
+    }
+
+    private long report(ProgressListener progress, int done, int total, long nextReport, long intervalMillis) {
+        if (intervalMillis <= 0 || done == total) return nextReport;
+        long now = System.currentTimeMillis();
+        if (now < nextReport) return nextReport;
+        progress.onProgress(done, total);
+        return now + intervalMillis;
+    }
+
+    private void append(BackupWriter writer, Future<EncodedRecord> future) throws IOException, InterruptedException {
+        EncodedRecord record;
+        try {
+            record = future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof InterruptedException) throw (InterruptedException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+        if (record == null) return;
+        throttle.consume(record.data.length);
+        writer.append(record.uuid, record.data);
+    }
+
+    private EncodedRecord encode(OfflinePlayer player, BackupWriter writer, Job job) throws IOException, InterruptedException {
+        StatVector stats;
+        job.lockPlayer(player.getUniqueId());
+        try {
+            stats = statsFiles.readAll(player);
+        } catch (Exception e) {
+            logger.severe("Could not save backup for player " + player.getName() + ": " + e.getMessage());
+            return null;
+        } finally {
+            job.unlockPlayer(player.getUniqueId());
+        }
+        UUID uuid = player.getUniqueId();
+        return new EncodedRecord(uuid, writer.encode(uuid, backupEntries(stats)));
+    }
+
+    /**
+     * @return the positive typed stats plus every untyped stat, zero or not, so a restore also resets
+     *         untyped stats that were zero at backup time
+     */
+    private StatVector backupEntries(StatVector stats) {
+        StatVector entries = new StatVector(stats.size() + simpleIndices.length);
+        int s = 0;
+        for (int i = 0; i < stats.size(); i++) {
+            int index = stats.keyAt(i);
+            while (s < simpleIndices.length && simpleIndices[s] < index) entries.append(simpleIndices[s++], 0);
+            boolean simple = s < simpleIndices.length && simpleIndices[s] == index;
+            if (simple) s++;
+            if (simple || stats.valueAt(i) > 0) entries.append(index, stats.valueAt(i));
+        }
+        while (s < simpleIndices.length) entries.append(simpleIndices[s++], 0);
+        return entries;
+    }
+
+    private static ThreadFactory workerFactory() {
+        return runnable -> {
+            Thread thread = new Thread(runnable, "VtStats-Backup-Worker-" + THREAD_IDS.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public interface ProgressListener {
+        void onProgress(int done, int total);
+    }
+
+    private static class EncodedRecord {
+        private final UUID uuid;
+        private final byte[] data;
+
+        EncodedRecord(UUID uuid, byte[] data) {
+            this.uuid = uuid;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Random access to the player records of one backup. Players are indexed in ascending UUID order.
+ */
+public interface BackupReader extends Closeable {
+
+    int getPlayerCount();
+
+    UUID getPlayer(int i);
+
+    /**
+     * @return the position of the player, or -1 if the backup has no record for it
+     */
+    int find(UUID uuid);
+
+    /**
+     * Reads one record. Records with a stored checksum are checked first, so a damaged record fails with an
+     * {@link IOException} instead of restoring wrong values.
+     */
+    void read(int i, SnapshotFormat.StatEntryConsumer consumer) throws IOException;
+
+    /**
+     * Checks every record against its stored checksum, or, for backups written without checksums,
+     * checks that every record can be decoded. May use the calling fork-join pool for parallel work.
+     *
+     * @return the players whose records are damaged or missing
+     * @throws IOException if the backup as a whole cannot be trusted, e.g. its index is damaged
+     */
+    List<UUID> verify() throws IOException;
+}
@@ -0,0 +1,30 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Sink for one backup. {@link #close()} publishes the backup, {@link #abort()} discards it.
+ * {@link #encode} may run on several worker threads at once; {@link #append} is called from a
+ * single thread in the order records should be stored.
+ */
+public interface BackupWriter extends Closeable {
+
+    byte[] encode(UUID uuid, StatVector stats) throws IOException;
+
+    void append(UUID uuid, byte[] record) throws IOException;
+
+    default void write(UUID uuid, StatVector stats) throws IOException {
+        append(uuid, encode(uuid, stats));
+    }
+
+    void abort();
+}
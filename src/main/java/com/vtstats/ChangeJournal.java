@@ -0,0 +1,466 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Statistic;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerStatisticIncrementEvent;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of every stat value written through VtStats and, for the stats under
+ * {@code journal.events}, of every statistic increment. Callers only queue the change; a single writer thread
+ * commits everything queued since the last commit as one CRC-checked record and forces it to disk. The queue
+ * is bounded like the {@link LogManager} queue: when it is full, background threads wait for the writer and the
+ * main thread drops the change. The writer then commits a gap record covering the time of the dropped changes,
+ * and a restore refuses to replay across it.
+ * <p>
+ * The journal is split into segments named after the time of their earliest entry. A new segment is started
+ * whenever a backup begins, and that time is kept as the backup's checkpoint, so a restore to any later time
+ * is the backup plus the journal from its checkpoint. Segments older than the oldest remaining backup can no
+ * longer be replayed and are removed after each backup.
+ */
+public class ChangeJournal implements StatsFileManager.ChangeListener, Listener {
+
+    public static final String EXTENSION = ".vtjrnl";
+    private static final int MAX_RECORD_ENTRIES = 16384;
+    private static final int QUEUE_CAPACITY = 65536;
+
+    private final VtStats plugin;
+    private final StatCatalog catalog;
+    private final File folder;
+    private final File checkpointFile;
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final Object gapLock = new Object();
+    private final Thread writerThread;
+    private final Object lock = new Object();
+    private volatile boolean running = true;
+    private volatile boolean enabled;
+    private volatile boolean[] trackedStats;
+    private volatile boolean[] trackedIndices;
+    private volatile long commitIntervalNanos;
+
+    // Guarded by lock.
+    private FileChannel channel;
+    private long recordStart;
+
+    // Guarded by gapLock.
+    private long gapStart = Long.MAX_VALUE;
+    private long gapEnd = Long.MIN_VALUE;
+
+    public ChangeJournal(VtStats plugin, StatCatalog catalog, StatsFileManager statsFiles) {
+        this.plugin = plugin;
+        this.catalog = catalog;
+        this.folder = new File(plugin.getDataFolder(), "journal");
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+        this.checkpointFile = new File(folder, "checkpoints.yml");
+        loadSettings();
+        statsFiles.addChangeListener(this);
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        this.writerThread = new Thread(this::writeLoop, "VtStats-Journal");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public void loadSettings() {
+        PluginSettings settings = plugin.getSettings();
+        enabled = settings.isJournalEnabled();
+        commitIntervalNanos = TimeUnit.MILLISECONDS.toNanos(settings.getJournalCommitIntervalMillis());
+        boolean[] stats = new boolean[Statistic.values().length];
+        boolean[] indices = new boolean[catalog.size()];
+        for (String key : settings.getJournalEvents()) {
+            int index = catalog.indexOf(key);
+            if (index >= 0) {
+                indices[index] = true;
+                stats[catalog.getStatistic(index).ordinal()] = true;
+            } else {
+                Statistic stat = Statistic.valueOf(key);
+                Arrays.fill(indices, catalog.firstIndexOf(stat), catalog.endIndexOf(stat), true);
+                stats[stat.ordinal()] = true;
+            }
+        }
+        trackedIndices = indices;
+        trackedStats = stats;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void onChange(UUID uuid, int index, int value) {
+        if (enabled) {
+            enqueue(new Entry(System.currentTimeMillis(), uuid, index, value));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onStatisticIncrement(PlayerStatisticIncrementEvent event) {
+        if (!enabled || !trackedStats[event.getStatistic().ordinal()]) return;
+        String qualifier = null;
+        if (event.getMaterial() != null) qualifier = event.getMaterial().name();
+        else if (event.getEntityType() != null) qualifier = event.getEntityType().name();
+        int index = catalog.indexOf(event.getStatistic(), qualifier);
+        if (index >= 0 && trackedIndices[index]) {
+            enqueue(new Entry(System.currentTimeMillis(), event.getPlayer().getUniqueId(), index, event.getNewValue()));
+        }
+    }
+
+    private void enqueue(Entry entry) {
+        while (queued.get() >= QUEUE_CAPACITY && running) {
+            LockSupport.unpark(writerThread);
+            if (Bukkit.isPrimaryThread()) {
+                dropped.incrementAndGet();
+                synchronized (gapLock) {
+                    gapStart = Math.min(gapStart, entry.time);
+                    gapEnd = Math.max(gapEnd, entry.time);
+                }
+                return;
+            }
+            LockSupport.parkNanos(100_000);
+        }
+        queue.add(entry);
+        if (queued.incrementAndGet() >= QUEUE_CAPACITY / 2) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    private void writeLoop() {
+        while (running) {
+            commit();
+            LockSupport.parkNanos(this, commitIntervalNanos);
+        }
+        commit();
+        synchronized (lock) {
+            closeChannel();
+        }
+    }
+
+    /**
+     * Writes everything queued as group-committed records and forces them to disk.
+     */
+    private void commit() {
+        int lost = dropped.getAndSet(0);
+        long[] gap = null;
+        if (lost > 0) {
+            synchronized (gapLock) {
+                gap = new long[] {gapStart, gapEnd};
+                gapStart = Long.MAX_VALUE;
+                gapEnd = Long.MIN_VALUE;
+            }
+            plugin.getLogger().warning("The change journal fell behind; " + lost + " changes were not journaled and cannot be replayed.");
+        }
+        if (queue.isEmpty() && gap == null) return;
+        synchronized (lock) {
+            try {
+                boolean wrote = false;
+                if (gap != null) {
+                    if (channel == null) openSegment(gap[0]);
+                    ByteBuffer marker = encodeGap(gap[0], gap[1]);
+                    while (marker.hasRemaining()) channel.write(marker);
+                    wrote = true;
+                }
+                ByteBuffer record;
+                while ((record = encodeRecord()) != null) {
+                    if (channel == null) openSegment(recordStart);
+                    while (record.hasRemaining()) channel.write(record);
+                    wrote = true;
+                }
+                if (wrote) channel.force(false);
+            } catch (IOException e) {
+                plugin.getLogger().severe("Could not write to the change journal: " + e.getMessage());
+                closeChannel();
+            }
+        }
+    }
+
+    /**
+     * Record layout: payload length, CRC32 of the payload, then the payload: base time, entry count and per
+     * entry the time offset, UUID, catalog index and value, with varints for everything but the UUID. A record
+     * with no entries is a gap: its base time and a varint length give the time range of changes that were lost.
+     *
+     * @return the next record, or null if nothing is queued; {@link #recordStart} is set to its earliest entry time
+     */
+    private ByteBuffer encodeRecord() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        DataOutputStream out = new DataOutputStream(bytes);
+        List<Entry> entries = new ArrayList<>();
+        Entry entry;
+        while (entries.size() < MAX_RECORD_ENTRIES && (entry = queue.poll()) != null) {
+            queued.decrementAndGet();
+            entries.add(entry);
+        }
+        if (entries.isEmpty()) return null;
+        long base = entries.get(0).time;
+        for (Entry e : entries) base = Math.min(base, e.time);
+        recordStart = base;
+        out.writeLong(base);
+        VarInts.writeUnsigned(out, entries.size());
+        for (Entry e : entries) {
+            VarInts.writeUnsigned(out, Math.max(0, e.time - base));
+            out.writeLong(e.uuid.getMostSignificantBits());
+            out.writeLong(e.uuid.getLeastSignificantBits());
+            VarInts.writeUnsigned(out, e.index);
+            VarInts.writeSigned(out, e.value);
+        }
+        return frame(bytes);
+    }
+
+    private static ByteBuffer encodeGap(long from, long until) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(from);
+        VarInts.writeUnsigned(out, 0);
+        VarInts.writeUnsigned(out, Math.max(0, until - from));
+        return frame(bytes);
+    }
+
+    private static ByteBuffer frame(ByteArrayOutputStream bytes) {
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        return record;
+    }
+
+    private void openSegment(long start) throws IOException {
+        channel = FileChannel.open(segmentFile(start).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {}
+            channel = null;
+        }
+    }
+
+    /**
+     * Commits what is queued and closes the current segment, so the next commit starts a new one named after
+     * its first entry; called when a backup begins.
+     *
+     * @return the checkpoint time recorded for the backup
+     */
+    public long markBackup(String backupName) {
+        commit();
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            closeChannel();
+            YamlConfiguration checkpoints = YamlConfiguration.loadConfiguration(checkpointFile);
+            checkpoints.set(backupName, now);
+            try {
+                checkpoints.save(checkpointFile);
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not save journal checkpoints: " + e.getMessage());
+            }
+        }
+        return now;
+    }
+
+    /**
+     * @return the time the backup started, in epoch millis, or -1 if the journal has no checkpoint for it
+     */
+    public long getCheckpoint(String backupName) {
+        synchronized (lock) {
+            return YamlConfiguration.loadConfiguration(checkpointFile).getLong(backupName, -1);
+        }
+    }
+
+    /**
+     * Forgets the checkpoints of deleted backups and removes segments that end before the oldest remaining one.
+     */
+    public void compact(Collection<String> backupNames) {
+        synchronized (lock) {
+            YamlConfiguration checkpoints = YamlConfiguration.loadConfiguration(checkpointFile);
+            Set<String> remaining = new HashSet<>(backupNames);
+            long oldest = Long.MAX_VALUE;
+            for (String name : checkpoints.getKeys(false)) {
+                if (!remaining.contains(name)) {
+                    checkpoints.set(name, null);
+                } else {
+                    oldest = Math.min(oldest, checkpoints.getLong(name));
+                }
+            }
+            try {
+                checkpoints.save(checkpointFile);
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not save journal checkpoints: " + e.getMessage());
+            }
+            if (oldest == Long.MAX_VALUE) return;
+
+            long[] starts = segmentStarts();
+            int removed = 0;
+            for (int i = 0; i + 1 < starts.length; i++) {
+                // A segment ends where the next one starts.
+                if (starts[i + 1] <= oldest && segmentFile(starts[i]).delete()) removed++;
+            }
+            if (removed > 0) plugin.getLogger().info("Removed " + removed + " journal segment(s) older than the oldest backup.");
+        }
+    }
+
+    /**
+     * Reads the journal between {@code from} and {@code until} and returns the last value written to each
+     * stat of each player in that window. Reading a segment stops at the first record that fails its checksum.
+     *
+     * @param gaps receives the {@code [from, until]} time range of every gap that overlaps the window
+     */
+    public Map<UUID, StatVector> collect(long from, long until, List<long[]> gaps) throws IOException {
+        Map<UUID, StatVector> changes = new HashMap<>();
+        read(from, until, changes, gaps);
+        return changes;
+    }
+
+    /**
+     * @return the {@code [from, until]} time range of every gap in the journal that overlaps the window
+     */
+    public List<long[]> findGaps(long from, long until) throws IOException {
+        List<long[]> gaps = new ArrayList<>();
+        read(from, until, null, gaps);
+        return gaps;
+    }
+
+    private void read(long from, long until, Map<UUID, StatVector> changes, List<long[]> gaps) throws IOException {
+        commit();
+        long[] starts;
+        synchronized (lock) {
+            starts = segmentStarts();
+        }
+        for (int i = 0; i < starts.length; i++) {
+            if (starts[i] > until) break;
+            if (i + 1 < starts.length && starts[i + 1] < from) continue;
+            readSegment(segmentFile(starts[i]), from, until, changes, gaps);
+        }
+    }
+
+    private void readSegment(File file, long from, long until, Map<UUID, StatVector> changes, List<long[]> gaps)
+            throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            while (true) {
+                byte[] payload;
+                int checksum;
+                try {
+                    int length = in.readInt();
+                    checksum = in.readInt();
+                    if (length < 0) throw new EOFException();
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    return;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    plugin.getLogger().warning("Journal segment " + file.getName() + " has a damaged record; the rest of it is skipped.");
+                    return;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                long base = record.readLong();
+                long count = VarInts.readUnsigned(record);
+                if (count == 0) {
+                    long end = base + VarInts.readUnsigned(record);
+                    if (base <= until && end >= from) gaps.add(new long[] {base, end});
+                    continue;
+                }
+                if (changes == null) continue;
+                for (long j = 0; j < count; j++) {
+                    long time = base + VarInts.readUnsigned(record);
+                    UUID uuid = new UUID(record.readLong(), record.readLong());
+                    int index = (int) VarInts.readUnsigned(record);
+                    int value = (int) VarInts.readSigned(record);
+                    if (time < from || time > until || index >= catalog.size()) continue;
+                    changes.computeIfAbsent(uuid, k -> new StatVector()).set(index, value);
+                }
+            }
+        }
+    }
+
+    private long[] segmentStarts() {
+        String[] names = folder.list((dir, name) -> name.endsWith(EXTENSION));
+        if (names == null) return new long[0];
+        long[] starts = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            try {
+                starts[count++] = Long.parseLong(name.substring(0, name.length() - EXTENSION.length()));
+            } catch (NumberFormatException ignored) {
+                count--;
+            }
+        }
+        starts = Arrays.copyOf(starts, count);
+        Arrays.sort(starts);
+        return starts;
+    }
+
+    private File segmentFile(long start) {
+        return new File(folder, String.format("%013d", start) + EXTENSION);
+    }
+
+    /**
+     * Stops the writer thread after everything queued has been committed.
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Entry {
+        private final long time;
+        private final UUID uuid;
+        private final int index;
+        private final int value;
+
+        private Entry(long time, UUID uuid, int index, int value) {
+            this.time = time;
+            this.uuid = uuid;
+            this.index = index;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,413 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Compares two backups, or a backup and the live stats, and writes every stat that differs to
+ * {@code diffs/<from>_<to>.diff} as {@code <uuid> <stat> <old> <new>} lines in UUID order.
+ * Both sides are read in ascending UUID order and merge-joined one player at a time, so memory does not grow
+ * with the number of players. The UUID range is cut into parts that are compared in parallel.
+ */
+public class DiffManager {
+
+    public static final String LIVE = "live";
+    public static final int PAGE_SIZE = 10;
+    private static final int PLAYERS_PER_PART = 512;
+
+    private final VtStats plugin;
+    private final LangManager lang;
+    private final StatCatalog catalog;
+    private final StatsFileManager statsFiles;
+    private final MainThreadApplier applier;
+    private final JobManager jobManager;
+    private final BackupManager backups;
+    private final PlayerResolver players;
+    private final File diffFolder;
+    private final Map<String, Result> lastResults = new ConcurrentHashMap<>();
+
+    public DiffManager(VtStats plugin, LangManager lang, StatCatalog catalog, StatsFileManager statsFiles,
+                       MainThreadApplier applier, JobManager jobManager, BackupManager backups, PlayerResolver players) {
+        this.plugin = plugin;
+        this.lang = lang;
+        this.catalog = catalog;
+        this.statsFiles = statsFiles;
+        this.applier = applier;
+        this.jobManager = jobManager;
+        this.backups = backups;
+        this.players = players;
+        this.diffFolder = new File(plugin.getDataFolder(), "diffs");
+        jobManager.registerType("diff", false, this::runDiffJob);
+    }
+
+    /**
+     * Starts a diff job.
+     *
+     * @param to      a backup name or {@link #LIVE}
+     * @param restore if true, every changed stat is then set back to its value in {@code from}; only allowed
+     *                against {@link #LIVE}, since a diff between two backups says nothing about current stats
+     */
+    public void diff(CommandSender sender, String from, String to, boolean restore) {
+        if (restore && !to.equalsIgnoreCase(LIVE)) {
+            sender.sendMessage(lang.getPrefixedMessage("diff-restore-live-only"));
+            return;
+        }
+        String missing = !backups.hasBackup(from) ? from : !to.equalsIgnoreCase(LIVE) && !backups.hasBackup(to) ? to : null;
+        if (missing != null) {
+            sender.sendMessage(lang.getPrefixedMessage("load-backup-not-found", "backup_name", missing));
+            return;
+        }
+        Map<String, String> params = new HashMap<>();
+        params.put("from", from);
+        params.put("to", to.equalsIgnoreCase(LIVE) ? LIVE : to);
+        params.put("restore", String.valueOf(restore));
+        Job job = jobManager.start(sender, "diff", params);
+        sender.sendMessage(lang.getPrefixedMessage("job-started", "id", String.valueOf(job.getId()), "type", job.getType()));
+    }
+
+    private void runDiffJob(Job job) throws IOException, InterruptedException {
+        String from = job.getParam("from");
+        String to = job.getParam("to");
+        long start = System.currentTimeMillis();
+        if (!diffFolder.exists()) diffFolder.mkdirs();
+        // The job id keeps two diffs of the same pair from writing to the same files.
+        File output = new File(diffFolder, from + "_" + to + "_" + job.getId() + ".diff");
+
+        long changes = 0;
+        int changedPlayers = 0;
+        try (BackupReader left = backups.openReader(from);
+             BackupReader right = to.equals(LIVE) ? new LiveReader() : backups.openReader(to)) {
+            ForkJoinPool pool = plugin.getScanPool();
+            List<int[]> parts = split(left, right, pool.getParallelism());
+            job.setTotal(parts.size());
+            List<Future<long[]>> futures = new ArrayList<>(parts.size());
+            for (int k = 0; k < parts.size(); k++) {
+                int[] part = parts.get(k);
+                File partFile = new File(diffFolder, output.getName() + ".part" + k);
+                futures.add(pool.submit(() -> diffPart(job, left, part[0], part[1], right, part[2], part[3], partFile)));
+            }
+            try (OutputStream out = Files.newOutputStream(output.toPath())) {
+                for (int k = 0; k < futures.size(); k++) {
+                    job.checkStopped();
+                    long[] counts = await(futures.get(k));
+                    File partFile = new File(diffFolder, output.getName() + ".part" + k);
+                    Files.copy(partFile.toPath(), out);
+                    partFile.delete();
+                    changes += counts[0];
+                    changedPlayers += (int) counts[1];
+                    job.advance();
+                }
+            } finally {
+                for (int k = 0; k < futures.size(); k++) {
+                    futures.get(k).cancel(true);
+                    new File(diffFolder, output.getName() + ".part" + k).delete();
+                }
+            }
+        }
+
+        Result result = new Result(from, to, output, changes, changedPlayers);
+        CommandSender sender = job.getSender();
+        String time = String.valueOf(System.currentTimeMillis() - start);
+        applier.submit(() -> {
+            lastResults.put(sender.getName(), result);
+            sender.sendMessage(lang.getPrefixedMessage("diff-finished",
+                    "from", from, "to", to,
+                    "changes", String.valueOf(result.changes),
+                    "players", String.valueOf(result.players),
+                    "time", time,
+                    "file", diffFolder.getName() + "/" + output.getName()));
+        });
+        if (result.changes > 0 && to.equals(LIVE) && Boolean.parseBoolean(job.getParam("restore"))) {
+            int restored = restoreChanged(job, output);
+            applier.submit(() -> sender.sendMessage(lang.getPrefixedMessage("diff-restored",
+                    "from", from, "changes", String.valueOf(result.changes), "players", String.valueOf(restored))));
+        } else if (result.changes > 0) {
+            Bukkit.getScheduler().runTask(plugin, () -> showPage(sender, result, 1));
+        }
+    }
+
+    /**
+     * Cuts both sources into parts that cover the same UUID range on each side.
+     *
+     * @return {@code [leftFrom, leftTo, rightFrom, rightTo]} per part, in UUID order
+     */
+    private static List<int[]> split(BackupReader left, BackupReader right, int parallelism) {
+        BackupReader larger = left.getPlayerCount() >= right.getPlayerCount() ? left : right;
+        int count = larger.getPlayerCount();
+        int parts = Math.max(1, Math.min(parallelism * 4, count / PLAYERS_PER_PART));
+        List<int[]> ranges = new ArrayList<>(parts);
+        int leftFrom = 0;
+        int rightFrom = 0;
+        for (int k = 1; k <= parts; k++) {
+            int leftTo = left.getPlayerCount();
+            int rightTo = right.getPlayerCount();
+            if (k < parts) {
+                UUID pivot = larger.getPlayer((int) ((long) k * count / parts));
+                leftTo = lowerBound(left, pivot);
+                rightTo = lowerBound(right, pivot);
+            }
+            ranges.add(new int[]{leftFrom, leftTo, rightFrom, rightTo});
+            leftFrom = leftTo;
+            rightFrom = rightTo;
+        }
+        return ranges;
+    }
+
+    /**
+     * @return the position of the first player not below {@code uuid}
+     */
+    private static int lowerBound(BackupReader reader, UUID uuid) {
+        int low = 0;
+        int high = reader.getPlayerCount();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (reader.getPlayer(mid).compareTo(uuid) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Merge-joins {@code left[leftFrom, leftTo)} with {@code right[rightFrom, rightTo)}. A player missing on one
+     * side compares as all zeros.
+     *
+     * @return {@code [changed stats, changed players]}
+     */
+    private long[] diffPart(Job job, BackupReader left, int leftFrom, int leftTo,
+                            BackupReader right, int rightFrom, int rightTo, File partFile) throws IOException {
+        long changes = 0;
+        long changedPlayers = 0;
+        StatVector oldStats = new StatVector();
+        StatVector newStats = new StatVector();
+        try (BufferedWriter out = Files.newBufferedWriter(partFile.toPath(), StandardCharsets.UTF_8)) {
+            int i = leftFrom;
+            int j = rightFrom;
+            while (i < leftTo || j < rightTo) {
+                job.checkStopped();
+                int cmp = i >= leftTo ? 1 : j >= rightTo ? -1 : left.getPlayer(i).compareTo(right.getPlayer(j));
+                UUID uuid = cmp <= 0 ? left.getPlayer(i) : right.getPlayer(j);
+                oldStats.clear();
+                newStats.clear();
+                if (cmp <= 0) left.read(i++, oldStats::set);
+                if (cmp >= 0) right.read(j++, newStats::set);
+                int written = writeChanges(out, uuid, oldStats, newStats);
+                if (written > 0) {
+                    changes += written;
+                    changedPlayers++;
+                }
+            }
+        }
+        return new long[]{changes, changedPlayers};
+    }
+
+    private int writeChanges(BufferedWriter out, UUID uuid, StatVector oldStats, StatVector newStats) throws IOException {
+        int written = 0;
+        int a = 0;
+        int b = 0;
+        while (a < oldStats.size() || b < newStats.size()) {
+            int oldKey = a < oldStats.size() ? oldStats.keyAt(a) : Integer.MAX_VALUE;
+            int newKey = b < newStats.size() ? newStats.keyAt(b) : Integer.MAX_VALUE;
+            int index = Math.min(oldKey, newKey);
+            int oldValue = oldKey == index ? oldStats.valueAt(a++) : 0;
+            int newValue = newKey == index ? newStats.valueAt(b++) : 0;
+            if (oldValue == newValue) continue;
+            out.write(uuid + " " + catalog.getKey(index) + " " + oldValue + " " + newValue);
+            out.newLine();
+            written++;
+        }
+        return written;
+    }
+
+    /**
+     * Sets every stat listed in the diff back to its old value, one player at a time.
+     *
+     * @return the number of players restored
+     */
+    private int restoreChanged(Job job, File diffFile) throws IOException, InterruptedException {
+        int restored = 0;
+        try (BufferedReader in = Files.newBufferedReader(diffFile.toPath(), StandardCharsets.UTF_8)) {
+            UUID current = null;
+            StatVector values = new StatVector();
+            String line;
+            while (true) {
+                line = in.readLine();
+                String[] fields = line != null ? line.split(" ") : null;
+                UUID uuid = fields != null ? UUID.fromString(fields[0]) : null;
+                if (current != null && !current.equals(uuid)) {
+                    job.checkStopped();
+                    restorePlayer(job, current, values);
+                    restored++;
+                    values.clear();
+                }
+                if (line == null) break;
+                current = uuid;
+                int index = catalog.indexOf(fields[1]);
+                if (index >= 0) values.set(index, Integer.parseInt(fields[2]));
+            }
+        }
+        return restored;
+    }
+
+    private void restorePlayer(Job job, UUID uuid, StatVector values) throws InterruptedException {
+        job.lockPlayer(uuid);
+        try {
+            StatHolder holder = statsFiles.open(Bukkit.getOfflinePlayer(uuid));
+            values.forEach(holder::set);
+            statsFiles.save(holder);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not restore diffed stats for player " + uuid + ": " + e.getMessage());
+        } finally {
+            job.unlockPlayer(uuid);
+        }
+    }
+
+    /**
+     * Shows a page of the sender's last diff, read from the diff file.
+     */
+    public void showPage(CommandSender sender, int page) {
+        Result result = lastResults.get(sender.getName());
+        if (result == null) {
+            sender.sendMessage(lang.getPrefixedMessage("diff-no-result"));
+            return;
+        }
+        showPage(sender, result, page);
+    }
+
+    private void showPage(CommandSender sender, Result result, int page) {
+        if (result.changes == 0) {
+            sender.sendMessage(lang.getPrefixedMessage("diff-empty", "from", result.from, "to", result.to));
+            return;
+        }
+        long pages = (result.changes + PAGE_SIZE - 1) / PAGE_SIZE;
+        long current = Math.max(1, Math.min(pages, page));
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<String[]> lines = new ArrayList<>(PAGE_SIZE);
+            try (BufferedReader in = Files.newBufferedReader(result.file.toPath(), StandardCharsets.UTF_8)) {
+                for (long skip = (current - 1) * PAGE_SIZE; skip > 0 && in.readLine() != null; skip--) {}
+                String line;
+                while (lines.size() < PAGE_SIZE && (line = in.readLine()) != null) lines.add(line.split(" "));
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not read " + result.file.getName() + ": " + e.getMessage());
+            }
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                sender.sendMessage(lang.getPrefixedMessage("diff-header",
+                        "from", result.from, "to", result.to,
+                        "changes", String.valueOf(result.changes),
+                        "players", String.valueOf(result.players),
+                        "page", String.valueOf(current),
+                        "pages", String.valueOf(pages)));
+                for (String[] fields : lines) {
+                    UUID uuid = UUID.fromString(fields[0]);
+                    String name = players.getName(uuid);
+                    sender.sendMessage(lang.getMessage("diff-entry",
+                            "player", name != null ? name : fields[0],
+                            "stat", fields[1], "old", fields[2], "new", fields[3]));
+                }
+                if (current < pages) {
+                    sender.sendMessage(lang.getMessage("diff-next-page", "page", String.valueOf(current + 1)));
+                }
+            });
+        });
+    }
+
+    private static final class Result {
+        private final String from;
+        private final String to;
+        private final File file;
+        private final long changes;
+        private final int players;
+
+        private Result(String from, String to, File file, long changes, int players) {
+            this.from = from;
+            this.to = to;
+            this.file = file;
+            this.changes = changes;
+            this.players = players;
+        }
+    }
+
+    /**
+     * The current stats of every player with a stats file or online, as a backup reader.
+     */
+    private final class LiveReader implements BackupReader {
+        private final UUID[] uuids;
+
+        private LiveReader() {
+            Set<UUID> all = new HashSet<>(statsFiles.listStoredPlayers());
+            for (Player player : Bukkit.getOnlinePlayers()) all.add(player.getUniqueId());
+            this.uuids = all.toArray(new UUID[0]);
+            Arrays.sort(uuids);
+        }
+
+        @Override
+        public int getPlayerCount() {
+            return uuids.length;
+        }
+
+        @Override
+        public UUID getPlayer(int i) {
+            return uuids[i];
+        }
+
+        @Override
+        public int find(UUID uuid) {
+            int i = Arrays.binarySearch(uuids, uuid);
+            return i >= 0 ? i : -1;
+        }
+
+        @Override
+        public void read(int i, SnapshotFormat.StatEntryConsumer consumer) throws IOException {
+            OfflinePlayer player = Bukkit.getOfflinePlayer(uuids[i]);
+            statsFiles.open(player).toVector().forEach(consumer);
+        }
+
+        @Override
+        public List<UUID> verify() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    private static long[] await(Future<long[]> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+}
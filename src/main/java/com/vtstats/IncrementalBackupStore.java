@@ -0,0 +1,417 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Content-addressed backup store. Each distinct player record is stored once under
+ * {@code objects/} and named by its SHA-256; a backup is just a {@code .vtman} manifest
+ * mapping UUIDs to record hashes, so unchanged players cost 48 bytes per backup.
+ * <pre>
+ * manifest  "VTMF" | version:u8 | keyTable:hash | count:i32 | (uuidMsb:i64 uuidLsb:i64 record:hash)* | crc:i32
+ * record    compression:u8 | payload                      payload as in {@link SnapshotFormat}
+ * keyTable  keyCount:varint | (len:varint utf8)*
+ * </pre>
+ * Record hashes cover the key table hash and the uncompressed payload, so they double as record checksums.
+ * The manifest CRC covers every byte before it; version 1 manifests have none.
+ */
+public class IncrementalBackupStore {
+
+    public static final String EXTENSION = ".vtman";
+    private static final byte[] MAGIC = {'V', 'T', 'M', 'F'};
+    private static final int VERSION = 2;
+    private static final int HASH_SIZE = 32;
+    private static final long GC_GRACE_MILLIS = 10 * 60 * 1000L;
+
+    private final File backupRoot;
+    private final File objectsDir;
+    private final StatCatalog catalog;
+    private final byte[] keyTable;
+    private final byte[] keyTableHash;
+    // Guarded by this.
+    private int openWriters;
+
+    public IncrementalBackupStore(File backupRoot, StatCatalog catalog) {
+        this.backupRoot = backupRoot;
+        this.objectsDir = new File(backupRoot, "objects");
+        this.catalog = catalog;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            VarInts.writeUnsigned(out, catalog.size());
+            for (int i = 0; i < catalog.size(); i++) {
+                byte[] key = catalog.getKey(i).getBytes(StandardCharsets.UTF_8);
+                VarInts.writeUnsigned(out, key.length);
+                out.write(key);
+            }
+            this.keyTable = out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.keyTableHash = sha256().digest(keyTable);
+    }
+
+    public BackupWriter createWriter(String name, int compression) throws IOException {
+        File manifest = new File(backupRoot, name + EXTENSION);
+        synchronized (this) {
+            openWriters++;
+        }
+        try {
+            storeObject(keyTableHash, keyTable);
+            return new ManifestWriter(manifest, compression, readPreviousHashes());
+        } catch (IOException | RuntimeException e) {
+            writerClosed();
+            throw e;
+        }
+    }
+
+    private synchronized void writerClosed() {
+        openWriters--;
+    }
+
+    public BackupReader openReader(File manifest) throws IOException {
+        return new ManifestReader(manifest);
+    }
+
+    /**
+     * Deletes every object no remaining manifest refers to. Nothing is deleted while a manifest is being
+     * written, because its records, new or reused, are not referenced from disk yet; the next collection
+     * catches up. Objects younger than a short grace period are kept as well.
+     */
+    public synchronized int collectGarbage() throws IOException {
+        if (openWriters > 0) return 0;
+        Set<String> live = new HashSet<>();
+        File[] manifests = backupRoot.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (manifests != null) {
+            for (File manifest : manifests) {
+                try (DataInputStream in = openManifest(manifest)) {
+                    byte[] hash = new byte[HASH_SIZE];
+                    in.readFully(hash);
+                    live.add(hex(hash));
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        in.readLong();
+                        in.readLong();
+                        in.readFully(hash);
+                        live.add(hex(hash));
+                    }
+                }
+            }
+        }
+
+        long cutoff = System.currentTimeMillis() - GC_GRACE_MILLIS;
+        int deleted = 0;
+        File[] buckets = objectsDir.listFiles(File::isDirectory);
+        if (buckets == null) return 0;
+        for (File bucket : buckets) {
+            File[] objects = bucket.listFiles();
+            if (objects == null) continue;
+            for (File object : objects) {
+                if (!live.contains(bucket.getName() + object.getName()) && object.lastModified() < cutoff && object.delete()) {
+                    deleted++;
+                }
+            }
+            String[] remaining = bucket.list();
+            if (remaining != null && remaining.length == 0) bucket.delete();
+        }
+        return deleted;
+    }
+
+    private Map<UUID, String> readPreviousHashes() {
+        File[] manifests = backupRoot.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (manifests == null || manifests.length == 0) return Collections.emptyMap();
+        File newest = Collections.max(Arrays.asList(manifests), Comparator.comparing(File::getName));
+        Map<UUID, String> hashes = new HashMap<>();
+        try (DataInputStream in = openManifest(newest)) {
+            byte[] hash = new byte[HASH_SIZE];
+            in.readFully(hash);
+            if (!Arrays.equals(hash, keyTableHash)) return Collections.emptyMap();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                in.readFully(hash);
+                hashes.put(uuid, hex(hash));
+            }
+        } catch (IOException e) {
+            return Collections.emptyMap();
+        }
+        return hashes;
+    }
+
+    private DataInputStream openManifest(File manifest) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest), 1 << 16));
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        int version = in.readUnsignedByte();
+        if (!Arrays.equals(magic, MAGIC) || version < 1 || version > VERSION) {
+            in.close();
+            throw new IOException("Not a supported backup manifest: " + manifest.getName());
+        }
+        return in;
+    }
+
+    private File objectFile(String hex) {
+        return new File(new File(objectsDir, hex.substring(0, 2)), hex.substring(2));
+    }
+
+    private void storeObject(byte[] hash, byte[] content) throws IOException {
+        File target = objectFile(hex(hash));
+        if (target.exists()) return;
+        target.getParentFile().mkdirs();
+        File tmp = new File(target.getParentFile(), target.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        Files.write(tmp.toPath(), content);
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private byte[] readObject(byte[] hash) throws IOException {
+        File file = objectFile(hex(hash));
+        if (!file.isFile()) throw new FileNotFoundException("Missing backup object " + hex(hash));
+        return Files.readAllBytes(file.toPath());
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            chars[i * 2 + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(chars);
+    }
+
+    private class ManifestWriter implements BackupWriter {
+        private final File target;
+        private final File tmpFile;
+        private final int compression;
+        private final Map<UUID, String> previous;
+        private final TreeMap<UUID, byte[]> entries = new TreeMap<>();
+        private boolean closed;
+
+        ManifestWriter(File target, int compression, Map<UUID, String> previous) {
+            this.target = target;
+            this.tmpFile = new File(target.getParentFile(), target.getName() + ".tmp");
+            this.compression = compression;
+            this.previous = previous;
+        }
+
+        @Override
+        public byte[] encode(UUID uuid, StatVector stats) throws IOException {
+            byte[] raw = SnapshotFormat.encodeRecord(stats, SnapshotFormat.COMPRESSION_NONE);
+            MessageDigest digest = sha256();
+            digest.update(keyTableHash);
+            byte[] hash = digest.digest(raw);
+
+            String hex = hex(hash);
+            if (hex.equals(previous.get(uuid)) && objectFile(hex).exists()) return hash;
+            byte[] payload = compression == SnapshotFormat.COMPRESSION_NONE
+                    ? raw
+                    : SnapshotFormat.encodeRecord(stats, compression);
+            byte[] content = new byte[payload.length + 1];
+            content[0] = (byte) compression;
+            System.arraycopy(payload, 0, content, 1, payload.length);
+            storeObject(hash, content);
+            return hash;
+        }
+
+        @Override
+        public void append(UUID uuid, byte[] record) {
+            entries.put(uuid, record);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                writeManifest();
+            } finally {
+                release();
+            }
+        }
+
+        private void writeManifest() throws IOException {
+            CRC32 crc = new CRC32();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(new FileOutputStream(tmpFile), crc), 1 << 16))) {
+                out.write(MAGIC);
+                out.writeByte(VERSION);
+                out.write(keyTableHash);
+                out.writeInt(entries.size());
+                for (Map.Entry<UUID, byte[]> entry : entries.entrySet()) {
+                    out.writeLong(entry.getKey().getMostSignificantBits());
+                    out.writeLong(entry.getKey().getLeastSignificantBits());
+                    out.write(entry.getValue());
+                }
+                out.flush();
+                out.writeInt((int) crc.getValue());
+            }
+            Files.move(tmpFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        @Override
+        public void abort() {
+            tmpFile.delete();
+            release();
+        }
+
+        private void release() {
+            if (closed) return;
+            closed = true;
+            writerClosed();
+        }
+    }
+
+    /**
+     * Reads a manifest in place with positional reads: entries are fixed-size and sorted by UUID,
+     * so one player is found by binary search without loading the whole manifest.
+     */
+    private class ManifestReader implements BackupReader {
+        private static final int ENTRY_SIZE = 16 + HASH_SIZE;
+
+        private final File manifest;
+        private final byte[] tableHash = new byte[HASH_SIZE];
+        private final int[] keyMapping;
+        private final PositionalFile data;
+        private final int version;
+        private final long entriesOffset;
+        private final int count;
+
+        ManifestReader(File manifest) throws IOException {
+            this.manifest = manifest;
+            try (DataInputStream in = openManifest(manifest)) {
+                in.readFully(tableHash);
+                this.count = in.readInt();
+            }
+            this.entriesOffset = MAGIC.length + 1 + HASH_SIZE + 4;
+            this.data = new PositionalFile(manifest);
+            try {
+                this.version = data.read(MAGIC.length, 1).get() & 0xFF;
+                if (count < 0 || entriesOffset + (long) count * ENTRY_SIZE > data.size()) {
+                    throw new IOException("Truncated backup manifest: " + manifest.getName());
+                }
+                this.keyMapping = readKeyTable(tableHash);
+            } catch (IOException | RuntimeException e) {
+                data.close();
+                throw e;
+            }
+        }
+
+        private int[] readKeyTable(byte[] hash) throws IOException {
+            if (Arrays.equals(hash, keyTableHash)) {
+                int[] identity = new int[catalog.size()];
+                for (int i = 0; i < identity.length; i++) identity[i] = i;
+                return identity;
+            }
+            InputStream in = new ByteArrayInputStream(readObject(hash));
+            int[] mapping = new int[(int) VarInts.readUnsigned(in)];
+            for (int i = 0; i < mapping.length; i++) {
+                byte[] key = new byte[(int) VarInts.readUnsigned(in)];
+                if (in.read(key) != key.length) throw new EOFException("Truncated key table");
+                mapping[i] = catalog.indexOf(new String(key, StandardCharsets.UTF_8));
+            }
+            return mapping;
+        }
+
+        @Override
+        public int getPlayerCount() {
+            return count;
+        }
+
+        @Override
+        public UUID getPlayer(int i) {
+            try {
+                long entry = entriesOffset + (long) i * ENTRY_SIZE;
+                return new UUID(data.getLong(entry), data.getLong(entry + 8));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public int find(UUID uuid) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = getPlayer(mid).compareTo(uuid);
+                if (cmp < 0) low = mid + 1;
+                else if (cmp > 0) high = mid - 1;
+                else return mid;
+            }
+            return -1;
+        }
+
+        @Override
+        public void read(int i, SnapshotFormat.StatEntryConsumer consumer) throws IOException {
+            byte[] raw = readVerified(i);
+            SnapshotFormat.decodeRecord(raw, 0, raw.length, SnapshotFormat.COMPRESSION_NONE, keyMapping, consumer);
+        }
+
+        /**
+         * @return the uncompressed record payload, after checking that it still hashes to the object's name
+         */
+        private byte[] readVerified(int i) throws IOException {
+            byte[] hash = data.read(entriesOffset + (long) i * ENTRY_SIZE + 16, HASH_SIZE).array();
+            byte[] content = readObject(hash);
+            if (content.length == 0) throw new EOFException("Empty backup object");
+            byte[] raw = SnapshotFormat.inflate(content, 1, content.length - 1, content[0]);
+            MessageDigest digest = sha256();
+            digest.update(tableHash);
+            if (!Arrays.equals(digest.digest(raw), hash)) {
+                throw new IOException("Damaged backup object " + hex(hash));
+            }
+            return raw;
+        }
+
+        /**
+         * Checks the manifest CRC, then re-hashes every record object in parallel.
+         */
+        @Override
+        public List<UUID> verify() throws IOException {
+            if (version > 1) {
+                CRC32 crc = new CRC32();
+                data.update(crc, 0, data.size() - 4);
+                if ((int) crc.getValue() != data.getInt(data.size() - 4)) {
+                    throw new IOException("Damaged backup manifest " + manifest.getName());
+                }
+            }
+            return IntStream.range(0, count).parallel()
+                    .filter(i -> !isIntact(i))
+                    .mapToObj(this::getPlayer)
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+
+        private boolean isIntact(int i) {
+            try {
+                readVerified(i);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            data.close();
+        }
+    }
+}
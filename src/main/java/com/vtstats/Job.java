@@ -0,0 +1,168 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.command.CommandSender;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A long-running backup, restore or reset tracked by the {@link JobManager}.
+ * Work is counted in players; {@link #getPosition()} is how many players, in the job's stable
+ * processing order, are completely done and is what a resumed job skips. Totals a job reports at the end
+ * are kept in counters, which are checkpointed with the position so a resumed job does not lose them.
+ */
+public class Job {
+
+    private final int id;
+    private final String type;
+    private final Map<String, String> params;
+    private final CommandSender sender;
+    private final JobManager manager;
+    private final long startTime = System.currentTimeMillis();
+    private final int startPosition;
+    private final AtomicInteger position;
+    private final Map<String, Long> counters;
+    private volatile int total;
+    private volatile boolean cancelled;
+    private volatile boolean interrupted;
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    Job(int id, String type, Map<String, String> params, CommandSender sender, JobManager manager, int startPosition,
+        Map<String, Long> counters) {
+        this.id = id;
+        this.type = type;
+        this.params = Collections.unmodifiableMap(params);
+        this.sender = sender;
+        this.manager = manager;
+        this.startPosition = startPosition;
+        this.position = new AtomicInteger(startPosition);
+        this.counters = new ConcurrentHashMap<>(counters);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getParam(String key) {
+        return params.get(key);
+    }
+
+    public Map<String, String> getParams() {
+        return params;
+    }
+
+    public CommandSender getSender() {
+        return sender;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public int getPosition() {
+        return position.get();
+    }
+
+    public long getCounter(String key) {
+        return counters.getOrDefault(key, 0L);
+    }
+
+    /**
+     * Call before {@link #advance()} for the player being counted, so the checkpoint includes it.
+     */
+    public void incrementCounter(String key) {
+        counters.merge(key, 1L, Long::sum);
+    }
+
+    Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    /**
+     * Marks one more player as completely processed and writes a checkpoint if one is due.
+     */
+    public void advance() {
+        position.incrementAndGet();
+        manager.checkpointIfDue(this);
+    }
+
+    /**
+     * @return estimated milliseconds until completion, or -1 if nothing has been processed yet
+     */
+    public long getEtaMillis() {
+        int processed = position.get() - startPosition;
+        if (processed <= 0 || total <= 0) return -1;
+        long elapsed = System.currentTimeMillis() - startTime;
+        return elapsed * Math.max(0, total - position.get()) / processed;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    void cancel() {
+        this.cancelled = true;
+    }
+
+    boolean isInterrupted() {
+        return interrupted;
+    }
+
+    void interrupt() {
+        this.interrupted = true;
+    }
+
+    void finish() {
+        finished.countDown();
+    }
+
+    /**
+     * @return true once the job's thread has returned
+     */
+    boolean awaitFinished(long millis) throws InterruptedException {
+        return finished.await(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Called between players; aborts the job once it was cancelled or the plugin is shutting down.
+     */
+    public void checkStopped() {
+        if (cancelled || interrupted) throw new CancellationException("Job #" + id + " stopped");
+    }
+
+    /**
+     * Blocks until no other job is working on the player. Must be paired with {@link #unlockPlayer}.
+     */
+    public void lockPlayer(UUID uuid) throws InterruptedException {
+        manager.lockPlayer(this, uuid);
+    }
+
+    public void unlockPlayer(UUID uuid) {
+        manager.unlockPlayer(this, uuid);
+    }
+}
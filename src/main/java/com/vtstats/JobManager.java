@@ -0,0 +1,292 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Registry of running {@link Job}s. Jobs run on async tasks, hold a per-player lock while they touch a
+ * player, and write a checkpoint under {@code jobs/} every few seconds. A player lock is only released once
+ * the {@link MainThreadApplier} has run every change queued before the unlock, so the next job never reads
+ * an online player's stats before the previous job's changes are applied. A job interrupted by a shutdown
+ * is resumed from its checkpoint on the next start.
+ */
+public class JobManager {
+
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 2000;
+    private static final long SHUTDOWN_WAIT_MILLIS = 10000;
+
+    private final JavaPlugin plugin;
+    private final LangManager lang;
+    private final MainThreadApplier applier;
+    private final File jobsFolder;
+    private final Map<String, JobRunner> runners = new HashMap<>();
+    private final Set<String> resumableTypes = new HashSet<>();
+    private final Map<Integer, Job> jobs = new ConcurrentSkipListMap<>();
+    private final Map<UUID, PlayerLock> playerLocks = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> lastCheckpoint = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    public JobManager(JavaPlugin plugin, LangManager lang, MainThreadApplier applier) {
+        this.plugin = plugin;
+        this.lang = lang;
+        this.applier = applier;
+        this.jobsFolder = new File(plugin.getDataFolder(), "jobs");
+        if (!jobsFolder.exists()) {
+            jobsFolder.mkdirs();
+        }
+        for (File file : checkpointFiles()) {
+            try {
+                nextId.accumulateAndGet(Integer.parseInt(file.getName().replace(".yml", "")) + 1, Math::max);
+            } catch (NumberFormatException ignored) {}
+        }
+    }
+
+    /**
+     * @param resumable true if the runner honours {@link Job#getPosition()} on start, so an interrupted job can continue
+     */
+    public void registerType(String type, boolean resumable, JobRunner runner) {
+        runners.put(type, runner);
+        if (resumable) resumableTypes.add(type);
+    }
+
+    public Job start(CommandSender sender, String type, Map<String, String> params) {
+        return start(sender, type, params, null);
+    }
+
+    /**
+     * @param onSuccess run on the main thread once the job completes normally; not kept across restarts
+     */
+    public Job start(CommandSender sender, String type, Map<String, String> params, Runnable onSuccess) {
+        return start(sender, type, params, 0, Collections.emptyMap(), nextId.getAndIncrement(), onSuccess);
+    }
+
+    private Job start(CommandSender sender, String type, Map<String, String> params, int position,
+                      Map<String, Long> counters, int id, Runnable onSuccess) {
+        JobRunner runner = runners.get(type);
+        if (runner == null) throw new IllegalArgumentException("Unknown job type " + type);
+        Job job = new Job(id, type, new LinkedHashMap<>(params), sender, this, position, counters);
+        jobs.put(id, job);
+        writeCheckpoint(job);
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> execute(job, runner, onSuccess));
+        return job;
+    }
+
+    /**
+     * @return every player who has joined, in the stable order resumable jobs process them
+     */
+    public static List<OfflinePlayer> playersInStableOrder() {
+        OfflinePlayer[] players = Bukkit.getOfflinePlayers();
+        Arrays.sort(players, Comparator.comparing(OfflinePlayer::getUniqueId));
+        return Arrays.asList(players);
+    }
+
+    private void execute(Job job, JobRunner runner, Runnable onSuccess) {
+        try {
+            runner.run(job);
+            deleteCheckpoint(job);
+            if (onSuccess != null) {
+                Bukkit.getScheduler().runTask(plugin, onSuccess);
+            }
+        } catch (CancellationException e) {
+            if (job.isInterrupted()) {
+                writeCheckpoint(job);
+            } else {
+                deleteCheckpoint(job);
+                applier.submit(() -> job.getSender().sendMessage(lang.getPrefixedMessage("job-cancelled", "id", String.valueOf(job.getId()))));
+            }
+        } catch (InterruptedException e) {
+            writeCheckpoint(job);
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            deleteCheckpoint(job);
+            plugin.getLogger().log(Level.SEVERE, "Job #" + job.getId() + " (" + job.getType() + ") failed", e);
+            applier.submit(() -> job.getSender().sendMessage(lang.getPrefixedMessage("job-failed", "id", String.valueOf(job.getId()))));
+        } finally {
+            jobs.remove(job.getId());
+            lastCheckpoint.remove(job.getId());
+            applier.submit(() -> playerLocks.values().removeIf(lock -> lock.owner == job));
+            job.finish();
+        }
+    }
+
+    public Collection<Job> getJobs() {
+        return Collections.unmodifiableCollection(jobs.values());
+    }
+
+    public Job getJob(int id) {
+        return jobs.get(id);
+    }
+
+    public boolean cancel(int id) {
+        Job job = jobs.get(id);
+        if (job == null) return false;
+        job.cancel();
+        return true;
+    }
+
+    void lockPlayer(Job job, UUID uuid) throws InterruptedException {
+        long wait = 1;
+        // Locks are only read and changed inside compute calls, which ConcurrentHashMap runs atomically per key.
+        while (playerLocks.compute(uuid, (key, current) -> {
+            if (current == null) return new PlayerLock(job);
+            if (current.owner == job) current.releasing = false;
+            return current;
+        }).owner != job) {
+            job.checkStopped();
+            Thread.sleep(wait);
+            wait = Math.min(50, wait * 2);
+        }
+    }
+
+    /**
+     * Takes the player's lock for work that is not a job, such as a command editing one player.
+     *
+     * @param owner any object that identifies the work; pass it to {@link #unlockPlayer} when done
+     * @return false if a job or other work already holds the lock
+     */
+    public boolean tryLockPlayer(Object owner, UUID uuid) {
+        return playerLocks.compute(uuid, (key, current) -> current != null ? current : new PlayerLock(owner)).owner == owner;
+    }
+
+    /**
+     * Releases the lock after the changes already queued on the main thread, which may include this player's.
+     * Locking the player again before that keeps the lock.
+     */
+    public void unlockPlayer(Object owner, UUID uuid) {
+        PlayerLock lock = playerLocks.computeIfPresent(uuid, (key, current) -> {
+            if (current.owner == owner) current.releasing = true;
+            return current;
+        });
+        if (lock == null || lock.owner != owner) return;
+        applier.submit(() -> playerLocks.computeIfPresent(uuid, (key, current) -> current == lock && lock.releasing ? null : current));
+    }
+
+    void checkpointIfDue(Job job) {
+        long now = System.currentTimeMillis();
+        Long last = lastCheckpoint.get(job.getId());
+        if (last == null || now - last >= CHECKPOINT_INTERVAL_MILLIS) {
+            lastCheckpoint.put(job.getId(), now);
+            writeCheckpoint(job);
+        }
+    }
+
+    /**
+     * Restarts every job whose checkpoint survived the last shutdown. Call after all job types are registered.
+     */
+    public void resumeInterrupted() {
+        for (File file : checkpointFiles()) {
+            YamlConfiguration checkpoint = YamlConfiguration.loadConfiguration(file);
+            String type = checkpoint.getString("type");
+            int id;
+            try {
+                id = Integer.parseInt(file.getName().replace(".yml", ""));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (type == null || !resumableTypes.contains(type)) {
+                plugin.getLogger().warning("Discarding checkpoint of job #" + id + " (" + type + "), it cannot be resumed.");
+                file.delete();
+                continue;
+            }
+            Map<String, String> params = new LinkedHashMap<>();
+            ConfigurationSection section = checkpoint.getConfigurationSection("params");
+            if (section != null) {
+                for (String key : section.getKeys(false)) params.put(key, section.getString(key));
+            }
+            Map<String, Long> counters = new HashMap<>();
+            section = checkpoint.getConfigurationSection("counters");
+            if (section != null) {
+                for (String key : section.getKeys(false)) counters.put(key, section.getLong(key));
+            }
+            int position = checkpoint.getInt("position", 0);
+            plugin.getLogger().info("Resuming job #" + id + " (" + type + ") at position " + position + ".");
+            start(Bukkit.getConsoleSender(), type, params, position, counters, id, null);
+        }
+    }
+
+    /**
+     * Asks every job to stop and waits for each one to reach its next stop check. Main-thread work queued
+     * meanwhile is run while waiting, since a job may be blocked on it. Each job writes its own checkpoint once
+     * it has stopped, so it resumes right after the last player it finished. Call before the applier is stopped.
+     */
+    public void shutdown() {
+        List<Job> running = new ArrayList<>(jobs.values());
+        for (Job job : running) job.interrupt();
+        long deadline = System.currentTimeMillis() + SHUTDOWN_WAIT_MILLIS;
+        try {
+            for (Job job : running) {
+                while (!job.awaitFinished(10)) {
+                    applier.drainAll();
+                    if (System.currentTimeMillis() > deadline) {
+                        plugin.getLogger().warning("Job #" + job.getId() + " (" + job.getType()
+                                + ") did not stop in time; it will resume from its last checkpoint.");
+                        break;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private File[] checkpointFiles() {
+        File[] files = jobsFolder.listFiles((dir, name) -> name.endsWith(".yml"));
+        return files != null ? files : new File[0];
+    }
+
+    private synchronized void writeCheckpoint(Job job) {
+        YamlConfiguration checkpoint = new YamlConfiguration();
+        checkpoint.set("type", job.getType());
+        checkpoint.set("position", job.getPosition());
+        checkpoint.set("total", job.getTotal());
+        checkpoint.set("started", job.getStartTime());
+        for (Map.Entry<String, String> param : job.getParams().entrySet()) {
+            checkpoint.set("params." + param.getKey(), param.getValue());
+        }
+        for (Map.Entry<String, Long> counter : job.getCounters().entrySet()) {
+            checkpoint.set("counters." + counter.getKey(), counter.getValue());
+        }
+        try {
+            checkpoint.save(new File(jobsFolder, job.getId() + ".yml"));
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not save checkpoint for job #" + job.getId() + ": " + e.getMessage());
+        }
+    }
+
+    private synchronized void deleteCheckpoint(Job job) {
+        new File(jobsFolder, job.getId() + ".yml").delete();
+    }
+
+    public interface JobRunner {
+        void run(Job job) throws Exception;
+    }
+
+    private static final class PlayerLock {
+        private final Object owner;
+        private boolean releasing;
+
+        private PlayerLock(Object owner) {
+            this.owner = owner;
+        }
+    }
+}
@@ -15,11 +15,16 @@ import org.bukkit.plugin.java.JavaPlugin;
 import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 public class LangManager {
 
     private final JavaPlugin plugin;
     private FileConfiguration langConfig;
+    private volatile Map<String, MessageTemplate> messages = Collections.emptyMap();
+    private volatile Map<String, MessageTemplate> prefixedMessages = Collections.emptyMap();
 
     public LangManager(JavaPlugin plugin) {
         this.plugin = plugin;
@@ -45,6 +50,7 @@ public class LangManager {
                 plugin.getLogger().severe("ERROR: Could not find '" + resourcePath + "' in the JAR file.");
                 plugin.getLogger().severe("Please make sure you have created the file at 'src/main/resources/" + resourcePath + "'.");
                 langConfig = new YamlConfiguration();
+                compileMessages();
                 return;
             }
         }
@@ -59,9 +65,36 @@ public class LangManager {
         } catch (Exception e) {
             e.printStackTrace();
         }
+        compileMessages();
     }
 
-    public String getMessage(String path) {
+    /**
+     * Compiles every message, and every message with the prefix in front, into templates once per load.
+     */
+    private void compileMessages() {
+        Map<String, MessageTemplate> plain = new HashMap<>();
+        Map<String, MessageTemplate> prefixed = new HashMap<>();
+        String prefix = translate("prefix");
+        for (String path : langConfig.getKeys(true)) {
+            addMessage(path, prefix, plain, prefixed);
+        }
+        if (langConfig.getDefaults() != null) {
+            for (String path : langConfig.getDefaults().getKeys(true)) {
+                if (!plain.containsKey(path)) addMessage(path, prefix, plain, prefixed);
+            }
+        }
+        messages = plain;
+        prefixedMessages = prefixed;
+    }
+
+    private void addMessage(String path, String prefix, Map<String, MessageTemplate> plain, Map<String, MessageTemplate> prefixed) {
+        if (!langConfig.isString(path)) return;
+        String message = translate(path);
+        plain.put(path, MessageTemplate.compile(message));
+        prefixed.put(path, MessageTemplate.compile(prefix + message));
+    }
+
+    private String translate(String path) {
         String message = langConfig.getString(path);
         if (message == null) {
             return ChatColor.RED + "Language file error: " + path;
@@ -69,7 +102,19 @@ public class LangManager {
         return ChatColor.translateAlternateColorCodes('&', message);
     }
 
-    public String getPrefixedMessage(String path) {
-        return getMessage("prefix") + getMessage(path);
+    /**
+     * @param placeholders alternating placeholder names (without braces) and values
+     */
+    public String getMessage(String path, String... placeholders) {
+        MessageTemplate template = messages.get(path);
+        return template != null ? template.render(placeholders) : translate(path);
+    }
+
+    /**
+     * @param placeholders alternating placeholder names (without braces) and values
+     */
+    public String getPrefixedMessage(String path, String... placeholders) {
+        MessageTemplate template = prefixedMessages.get(path);
+        return template != null ? template.render(placeholders) : getMessage("prefix") + translate(path);
     }
 }
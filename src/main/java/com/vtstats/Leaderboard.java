@@ -0,0 +1,256 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntSupplier;
+
+/**
+ * Every player with a non-zero value of one statistic, highest first, ties broken by UUID.
+ * Backed by a treap whose nodes carry subtree sizes, so updates, rank lookups and finding the
+ * k-th entry are O(log n); listing the top k is O(log n + k).
+ */
+public class Leaderboard {
+
+    private final String statKey;
+    private final Map<UUID, Node> nodes = new HashMap<>();
+    private Node root;
+    /** Players changed since the scan began; null when no scan is running. */
+    private Set<UUID> changedDuringScan;
+
+    public Leaderboard(String statKey) {
+        this.statKey = statKey;
+    }
+
+    public String getStatKey() {
+        return statKey;
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    /**
+     * @return the player's value, or 0 if the player is not on the board
+     */
+    public synchronized int getValue(UUID uuid) {
+        Node node = nodes.get(uuid);
+        return node != null ? node.value : 0;
+    }
+
+    public synchronized void update(UUID uuid, int value) {
+        if (changedDuringScan != null) {
+            changedDuringScan.add(uuid);
+        }
+        put(uuid, value);
+    }
+
+    private void put(UUID uuid, int value) {
+        Node old = nodes.get(uuid);
+        if (old != null) {
+            if (old.value == value) return;
+            root = remove(root, old);
+            nodes.remove(uuid);
+        }
+        if (value != 0) {
+            Node node = new Node(uuid, value);
+            root = insert(root, node);
+            nodes.put(uuid, node);
+        }
+    }
+
+    /**
+     * Reads the value while holding the board's lock, so a concurrent update can never be overwritten by
+     * a value that was read before it.
+     */
+    public synchronized void refresh(UUID uuid, IntSupplier value) {
+        update(uuid, value.getAsInt());
+    }
+
+    /**
+     * Starts remembering every player that is updated, so {@link #offer} can tell scan results that are
+     * older than the update, including one that removed the player, apart from fresh ones.
+     */
+    public synchronized void beginScan() {
+        changedDuringScan = new HashSet<>();
+    }
+
+    public synchronized void endScan() {
+        changedDuringScan = null;
+    }
+
+    /**
+     * Sets a value read by the scan, unless the player was updated after the scan began, so a slow scan
+     * never overwrites a newer update or brings back a player whose stat was reset.
+     */
+    public synchronized void offer(UUID uuid, int value) {
+        if (value == 0 || nodes.containsKey(uuid)) return;
+        if (changedDuringScan != null && changedDuringScan.contains(uuid)) return;
+        put(uuid, value);
+    }
+
+    public synchronized void clear() {
+        nodes.clear();
+        root = null;
+    }
+
+    /**
+     * @return the player's 1-based rank, or -1 if the player is not on the board
+     */
+    public synchronized int getRank(UUID uuid) {
+        Node target = nodes.get(uuid);
+        if (target == null) return -1;
+        int rank = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = compare(target, node);
+            if (cmp < 0) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                if (cmp == 0) break;
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * @return up to {@code count} entries starting at the 1-based {@code fromRank}
+     */
+    public synchronized List<Entry> getRange(int fromRank, int count) {
+        List<Entry> result = new ArrayList<>(Math.max(0, Math.min(count, nodes.size())));
+        collect(root, fromRank - 1, count, result);
+        return result;
+    }
+
+    public List<Entry> getTop(int count) {
+        return getRange(1, count);
+    }
+
+    private static void collect(Node node, int skip, int count, List<Entry> out) {
+        if (node == null || out.size() >= count) return;
+        int leftSize = size(node.left);
+        if (skip < leftSize) {
+            collect(node.left, skip, count, out);
+        }
+        if (out.size() >= count) return;
+        if (skip <= leftSize) {
+            out.add(new Entry(node.uuid, node.value));
+        }
+        collect(node.right, Math.max(0, skip - leftSize - 1), count, out);
+    }
+
+    private static int compare(Node a, Node b) {
+        if (a.value != b.value) return a.value > b.value ? -1 : 1;
+        return a.uuid.compareTo(b.uuid);
+    }
+
+    private static int size(Node node) {
+        return node != null ? node.size : 0;
+    }
+
+    private static Node update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        return node;
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) return added;
+        if (added.priority > node.priority) {
+            Node[] parts = split(node, added);
+            added.left = parts[0];
+            added.right = parts[1];
+            return update(added);
+        }
+        if (compare(added, node) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        return update(node);
+    }
+
+    private static Node remove(Node node, Node removed) {
+        if (node == null) return null;
+        if (node == removed) return merge(node.left, node.right);
+        if (compare(removed, node) < 0) {
+            node.left = remove(node.left, removed);
+        } else {
+            node.right = remove(node.right, removed);
+        }
+        return update(node);
+    }
+
+    /**
+     * @return the nodes ordered before {@code key} and the nodes ordered after it
+     */
+    private static Node[] split(Node node, Node key) {
+        if (node == null) return new Node[2];
+        if (compare(node, key) < 0) {
+            Node[] parts = split(node.right, key);
+            node.right = parts[0];
+            parts[0] = update(node);
+            return parts;
+        }
+        Node[] parts = split(node.left, key);
+        node.left = parts[1];
+        parts[1] = update(node);
+        return parts;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return update(left);
+        }
+        right.left = merge(left, right.left);
+        return update(right);
+    }
+
+    private static final class Node {
+        private final UUID uuid;
+        private final int value;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private Node left;
+        private Node right;
+        private int size = 1;
+
+        private Node(UUID uuid, int value) {
+            this.uuid = uuid;
+            this.value = value;
+        }
+    }
+
+    public static final class Entry {
+        private final UUID uuid;
+        private final int value;
+
+        private Entry(UUID uuid, int value) {
+            this.uuid = uuid;
+            this.value = value;
+        }
+
+        public UUID getUniqueId() {
+            return uuid;
+        }
+
+        public int getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Statistic;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerStatisticIncrementEvent;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Leaderboards for the stats listed under {@code leaderboards.stats}. They are filled by one parallel scan
+ * of the stats files at startup and then kept current from statistic events, from every write made through
+ * {@link StatsFileManager#save}, and from {@link #update} for changes made through the Bukkit API.
+ */
+public class LeaderboardManager implements Listener, StatsFileManager.ChangeListener {
+
+    private final VtStats plugin;
+    private final StatCatalog catalog;
+    private final StatsFileManager statsFiles;
+    private volatile Leaderboard[] boards;
+    private volatile boolean[] trackedStats;
+    private volatile Set<String> trackedKeys = Collections.emptySet();
+    private final AtomicInteger generation = new AtomicInteger();
+
+    public LeaderboardManager(VtStats plugin, StatCatalog catalog, StatsFileManager statsFiles) {
+        this.plugin = plugin;
+        this.catalog = catalog;
+        this.statsFiles = statsFiles;
+        this.boards = new Leaderboard[catalog.size()];
+        this.trackedStats = new boolean[Statistic.values().length];
+        statsFiles.addChangeListener(this);
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        loadSettings();
+    }
+
+    /**
+     * Picks up the tracked stats from the current settings and rebuilds the boards if the list changed.
+     */
+    public void loadSettings() {
+        Set<String> keys = new LinkedHashSet<>(plugin.getSettings().getLeaderboardStats());
+        if (keys.equals(trackedKeys)) return;
+
+        Leaderboard[] newBoards = new Leaderboard[catalog.size()];
+        boolean[] newTracked = new boolean[Statistic.values().length];
+        for (String key : keys) {
+            int index = catalog.indexOf(key);
+            newBoards[index] = new Leaderboard(key);
+            newTracked[catalog.getStatistic(index).ordinal()] = true;
+        }
+        boards = newBoards;
+        trackedStats = newTracked;
+        trackedKeys = keys;
+        if (!keys.isEmpty()) {
+            rebuild(newBoards);
+        }
+    }
+
+    private void rebuild(Leaderboard[] target) {
+        int scan = generation.incrementAndGet();
+        int[] indices = trackedIndices(target);
+        for (int index : indices) {
+            target[index].beginScan();
+        }
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            long start = System.currentTimeMillis();
+            List<UUID> players = statsFiles.listStoredPlayers();
+            // The loads block on disk and on the throttle, so they run on the plugin's own pool, not the common one.
+            plugin.getScanPool().submit(() -> players.parallelStream().forEach(uuid -> {
+                if (generation.get() != scan) return;
+                try {
+                    StatsFile stats = statsFiles.load(uuid);
+                    for (int index : indices) {
+                        target[index].offer(uuid, stats.get(index));
+                    }
+                } catch (IOException e) {
+                    plugin.getLogger().warning("Could not read stats of " + uuid + " for the leaderboards: " + e.getMessage());
+                }
+            })).join();
+            if (generation.get() != scan) return;
+            // Stats files lag behind online players; take their live values instead.
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                for (Player player : Bukkit.getOnlinePlayers()) {
+                    refresh(player);
+                }
+                for (int index : indices) {
+                    target[index].endScan();
+                }
+            });
+            plugin.getLogger().info("Built " + indices.length + " leaderboard(s) from " + players.size() + " players in "
+                    + (System.currentTimeMillis() - start) + " ms.");
+        });
+    }
+
+    private static int[] trackedIndices(Leaderboard[] boards) {
+        int count = 0;
+        for (Leaderboard board : boards) if (board != null) count++;
+        int[] indices = new int[count];
+        for (int i = 0, j = 0; i < boards.length; i++) {
+            if (boards[i] != null) indices[j++] = i;
+        }
+        return indices;
+    }
+
+    /**
+     * @param statKey a key in command form, e.g. {@code MINE_BLOCK:DIAMOND_ORE}
+     * @return the board, or null if the stat is not tracked
+     */
+    public Leaderboard getLeaderboard(String statKey) {
+        int index = catalog.indexOf(statKey.toUpperCase());
+        return index >= 0 ? boards[index] : null;
+    }
+
+    public boolean isTracked(String statKey) {
+        return getLeaderboard(statKey) != null;
+    }
+
+    public List<String> getTrackedStats() {
+        return new ArrayList<>(trackedKeys);
+    }
+
+    /**
+     * @return the top {@code count} entries of the stat, or an empty list if the stat is not tracked
+     */
+    public List<Leaderboard.Entry> getTop(String statKey, int count) {
+        Leaderboard board = getLeaderboard(statKey);
+        return board != null ? board.getTop(count) : Collections.emptyList();
+    }
+
+    /**
+     * @return the player's 1-based rank for the stat, or -1 if the stat is not tracked or the player has no value
+     */
+    public int getRank(UUID uuid, String statKey) {
+        Leaderboard board = getLeaderboard(statKey);
+        return board != null ? board.getRank(uuid) : -1;
+    }
+
+    /**
+     * For an online player the value may already be stale by the time it gets here, so the live value is
+     * read again on the main thread, after the change has been applied.
+     */
+    public void update(UUID uuid, int index, int value) {
+        Leaderboard board = boards[index];
+        if (board == null) return;
+        if (Bukkit.getPlayer(uuid) == null) {
+            board.update(uuid, value);
+            return;
+        }
+        plugin.getMainThreadApplier().submit(() -> {
+            Player player = Bukkit.getPlayer(uuid);
+            if (player != null) {
+                board.refresh(uuid, () -> catalog.getValue(player, index));
+            } else {
+                board.update(uuid, value);
+            }
+        });
+    }
+
+    @Override
+    public void onChange(UUID uuid, int index, int value) {
+        update(uuid, index, value);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onStatisticIncrement(PlayerStatisticIncrementEvent event) {
+        Statistic stat = event.getStatistic();
+        if (!trackedStats[stat.ordinal()]) return;
+        String qualifier = null;
+        if (event.getMaterial() != null) qualifier = event.getMaterial().name();
+        else if (event.getEntityType() != null) qualifier = event.getEntityType().name();
+        int index = catalog.indexOf(stat, qualifier);
+        Leaderboard board = index >= 0 ? boards[index] : null;
+        if (board != null) {
+            board.update(event.getPlayer().getUniqueId(), event.getNewValue());
+        }
+    }
+
+    /**
+     * Some stats, such as play time, never fire increment events; they are picked up when the player leaves.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        refresh(event.getPlayer());
+    }
+
+    private void refresh(Player player) {
+        Leaderboard[] current = boards;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] != null) {
+                int index = i;
+                current[i].refresh(player.getUniqueId(), () -> catalog.getValue(player, index));
+            }
+        }
+    }
+
+    public void shutdown() {
+        generation.incrementAndGet();
+    }
+}
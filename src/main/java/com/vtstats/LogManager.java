@@ -7,25 +7,87 @@
  */
 package com.vtstats;
 
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.command.CommandSender;
-import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Writes the action log. Callers only format the line and put it on a bounded queue; a single writer
+ * thread appends queued lines to a long-lived channel, flushes on a timer, and rotates the file by size
+ * and by date, optionally gzipping rotated files. The same thread also appends each action to the
+ * structured {@link AuditLog}.
+ */
 public class LogManager {
 
-    private final JavaPlugin plugin;
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter ROTATED_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private final VtStats plugin;
     private final File logFile;
+    private final AuditLog auditLog;
+    private final MetricsManager metrics;
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    private volatile long flushIntervalNanos;
+    private volatile long maxSizeBytes;
+    private volatile boolean rotateDaily;
+    private volatile boolean compressRotated;
+    private volatile int maxRotatedFiles;
 
-    public LogManager(JavaPlugin plugin) {
+    // Only touched by the writer thread.
+    private FileChannel channel;
+    private long fileSize;
+    private LocalDate fileDate;
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedTimestamp;
+
+    public LogManager(VtStats plugin, StatCatalog catalog) {
         this.plugin = plugin;
         this.logFile = new File(plugin.getDataFolder(), "logs/vtstats.log");
+        this.metrics = plugin.getMetricsManager();
         setupLogFile();
+        AuditLog audit = null;
+        try {
+            audit = new AuditLog(new File(plugin.getDataFolder(), "logs/audit"), catalog);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not open the audit log, history and undo are unavailable: " + e.getMessage());
+        }
+        this.auditLog = audit;
+        loadSettings();
+        this.writerThread = new Thread(this::writeLoop, "VtStats-Log");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
     }
 
     private void setupLogFile() {
@@ -34,30 +96,269 @@ public class LogManager {
         }
     }
 
+    public void loadSettings() {
+        PluginSettings settings = plugin.getSettings();
+        flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(settings.getLogFlushIntervalMillis());
+        maxSizeBytes = settings.getLogRotationMaxBytes();
+        rotateDaily = settings.isLogRotationDaily();
+        compressRotated = settings.isLogRotationCompress();
+        maxRotatedFiles = settings.getLogRotationMaxFiles();
+    }
+
+    /**
+     * @return the structured audit log, or null if it could not be opened
+     */
+    public AuditLog getAuditLog() {
+        return auditLog;
+    }
+
     public void logAction(CommandSender sender, String action, String stat, String target, String value) {
-        if (!plugin.getConfig().getBoolean("logging.enable", true)) return;
+        Long newValue = null;
+        if (value != null) {
+            try {
+                newValue = Long.parseLong(value);
+            } catch (NumberFormatException ignored) {}
+        }
+        log(sender.getName(), action, stat, null, target, null, newValue, value);
+    }
 
-        String logMessage = String.format("%s performed action '%s' | Stat: %s | Target: %s",
-                sender.getName(), action, stat, target);
+    /**
+     * Logs a change to one player, recording the value it replaced so the change can be undone.
+     */
+    public void logChange(CommandSender sender, String action, String stat, OfflinePlayer target, Long oldValue, Long newValue) {
+        log(sender.getName(), action, stat, target.getUniqueId(), target.getName(), oldValue, newValue,
+                newValue != null ? String.valueOf(newValue) : null);
+    }
+
+    private void log(String actor, String action, String stat, UUID targetId, String target, Long oldValue, Long newValue, String value) {
+        PluginSettings settings = plugin.getSettings();
+        if (!settings.isLoggingEnabled()) return;
+
+        String logMessage = actor + " performed action '" + action + "' | Stat: " + stat + " | Target: " + target;
         if (value != null) {
             logMessage += " | Value: " + value;
         }
+        if (oldValue != null) {
+            logMessage += " | Previous: " + oldValue;
+        }
 
-        if (plugin.getConfig().getBoolean("logging.log-to-file", true)) {
-            logToFile(logMessage);
-        } else {
+        boolean toFile = settings.isLogToFile();
+        if (!toFile) {
             plugin.getLogger().info(logMessage);
         }
+        AuditLog.Record record = null;
+        if (auditLog != null && settings.isAuditEnabled()) {
+            String statKey = stat == null || stat.equalsIgnoreCase("N/A") ? null : stat;
+            record = new AuditLog.Record(System.currentTimeMillis(), actor, action, statKey, targetId, target, oldValue, newValue);
+        }
+        if (toFile || record != null) {
+            enqueue(toFile ? logMessage : null, record);
+        }
+    }
+
+    private void enqueue(String message, AuditLog.Record record) {
+        if (!running) {
+            if (message != null) plugin.getLogger().info(message);
+            return;
+        }
+        // When the writer falls this far behind, background threads wait for it, but the main thread never
+        // does: its entry is dropped, counted and reported by the writer. Audit records are the exception, as
+        // history and undo depend on them; they come from commands, so queueing them past the limit stays small.
+        while (queued.get() >= QUEUE_CAPACITY && running) {
+            LockSupport.unpark(writerThread);
+            if (Bukkit.isPrimaryThread()) {
+                if (record != null) break;
+                dropped.incrementAndGet();
+                return;
+            }
+            LockSupport.parkNanos(100_000);
+        }
+        queue.add(new Entry(System.currentTimeMillis(), message, record));
+        if (queued.incrementAndGet() >= QUEUE_CAPACITY / 2) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Stops the writer thread after everything queued has been written and closes the file.
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
-    private void logToFile(String message) {
-        try (FileWriter fw = new FileWriter(logFile, true);
-             PrintWriter pw = new PrintWriter(fw)) {
-            String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
-            pw.println("[" + timestamp + "] " + message);
+    private void writeLoop() {
+        while (running) {
+            drain();
+            LockSupport.parkNanos(this, flushIntervalNanos);
+        }
+        drain();
+        closeChannel();
+        if (auditLog != null) {
+            auditLog.close();
+        }
+    }
+
+    private void drain() {
+        int lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            plugin.getLogger().warning("The log writer fell behind; " + lost + " log entries from the main thread were dropped.");
+        }
+        if (queue.isEmpty()) return;
+        long start = metrics.start();
+        try {
+            Entry entry;
+            while ((entry = queue.poll()) != null) {
+                queued.decrementAndGet();
+                if (entry.message != null) {
+                    append(entry);
+                }
+                if (entry.record != null) {
+                    appendRecord(entry.record);
+                }
+            }
+            flushBuffer();
         } catch (IOException e) {
-            plugin.getLogger().severe("Could not write to log file!");
-            e.printStackTrace();
+            plugin.getLogger().severe("Could not write to log file: " + e.getMessage());
+            buffer.clear();
+            closeChannel();
+        }
+        metrics.record(MetricsManager.Metric.LOG_WRITE, start);
+    }
+
+    private void append(Entry entry) throws IOException {
+        if (channel == null) {
+            openChannel();
+        }
+        LocalDate date = Instant.ofEpochMilli(entry.time).atZone(ZoneId.systemDefault()).toLocalDate();
+        if ((rotateDaily && !date.equals(fileDate)) || (maxSizeBytes > 0 && fileSize + buffer.position() >= maxSizeBytes)) {
+            flushBuffer();
+            rotate();
+        }
+        byte[] line = ("[" + timestamp(entry.time) + "] " + entry.message + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        if (line.length > buffer.remaining()) {
+            flushBuffer();
+            if (line.length > buffer.capacity()) {
+                fileSize += channel.write(ByteBuffer.wrap(line));
+                return;
+            }
+        }
+        buffer.put(line);
+    }
+
+    private void appendRecord(AuditLog.Record record) {
+        try {
+            auditLog.append(record);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not write to the audit log: " + e.getMessage());
+        }
+    }
+
+    private String timestamp(long time) {
+        long second = time / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedTimestamp = TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()));
+        }
+        return cachedTimestamp;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (channel == null || buffer.position() == 0) return;
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            fileSize += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void openChannel() throws IOException {
+        setupLogFile();
+        channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileSize = channel.size();
+        fileDate = fileSize > 0
+                ? Instant.ofEpochMilli(logFile.lastModified()).atZone(ZoneId.systemDefault()).toLocalDate()
+                : LocalDate.now();
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+        channel = null;
+    }
+
+    private void rotate() throws IOException {
+        LocalDate date = fileDate;
+        closeChannel();
+        if (logFile.length() > 0) {
+            File rotated = rotatedFile(date);
+            if (!logFile.renameTo(rotated)) {
+                throw new IOException("Could not rename " + logFile + " to " + rotated);
+            }
+            if (compressRotated) {
+                compress(rotated);
+            }
+            pruneRotated();
+        }
+        openChannel();
+        fileDate = LocalDate.now();
+    }
+
+    private File rotatedFile(LocalDate date) {
+        File folder = logFile.getParentFile();
+        String base = "vtstats-" + ROTATED_FORMAT.format(date);
+        for (int i = 1; ; i++) {
+            File candidate = new File(folder, base + "-" + i + ".log");
+            if (!candidate.exists() && !new File(folder, candidate.getName() + ".gz").exists()) {
+                return candidate;
+            }
+        }
+    }
+
+    private void compress(File file) {
+        File gz = new File(file.getParentFile(), file.getName() + ".gz");
+        try (InputStream in = new FileInputStream(file);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(gz), BUFFER_SIZE)) {
+            byte[] chunk = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not compress rotated log " + file.getName() + ": " + e.getMessage());
+            gz.delete();
+            return;
+        }
+        file.delete();
+    }
+
+    private void pruneRotated() {
+        if (maxRotatedFiles <= 0) return;
+        File[] rotated = logFile.getParentFile().listFiles((dir, name) -> name.startsWith("vtstats-")
+                && (name.endsWith(".log") || name.endsWith(".log.gz")));
+        if (rotated == null || rotated.length <= maxRotatedFiles) return;
+        Arrays.sort(rotated, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < rotated.length - maxRotatedFiles; i++) {
+            rotated[i].delete();
+        }
+    }
+
+    private static final class Entry {
+        private final long time;
+        private final String message;
+        private final AuditLog.Record record;
+
+        private Entry(long time, String message, AuditLog.Record record) {
+            this.time = time;
+            this.message = message;
+            this.record = record;
         }
     }
 }
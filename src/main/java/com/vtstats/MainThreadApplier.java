@@ -0,0 +1,112 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Runs work that must happen on the main thread, such as changing an online player's statistics,
+ * without stalling the tick. Operations prepared off-thread are queued here and drained every tick
+ * until a millisecond budget is spent. Batch sizes follow the measured average cost per operation,
+ * so the clock is only read once per batch. Operations run in submission order.
+ */
+public class MainThreadApplier {
+
+    private static final int MAX_BATCH = 4096;
+
+    private final JavaPlugin plugin;
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile long budgetNanos;
+    private double averageCostNanos = 50_000;
+    private BukkitTask task;
+
+    public MainThreadApplier(JavaPlugin plugin, double budgetMillis) {
+        this.plugin = plugin;
+        setBudgetMillis(budgetMillis);
+    }
+
+    public void start() {
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::drain, 1L, 1L);
+        }
+    }
+
+    /**
+     * Stops the tick task and runs everything still queued, ignoring the budget, so no change is lost on shutdown.
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        drainAll();
+    }
+
+    /**
+     * Runs everything queued so far, ignoring the budget. Main thread only; for shutdown, where the main thread
+     * waits on work that may itself be waiting on this queue.
+     */
+    public void drainAll() {
+        Runnable op;
+        while ((op = queue.poll()) != null) {
+            pending.decrementAndGet();
+            runSafely(op);
+        }
+    }
+
+    public void setBudgetMillis(double budgetMillis) {
+        this.budgetNanos = (long) (Math.max(0.1, budgetMillis) * 1_000_000L);
+    }
+
+    public void submit(Runnable op) {
+        pending.incrementAndGet();
+        queue.add(op);
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    private void drain() {
+        long start = System.nanoTime();
+        long deadline = start + budgetNanos;
+        long now = start;
+        while (now < deadline && !queue.isEmpty()) {
+            int batch = (int) Math.max(1, Math.min(MAX_BATCH, (deadline - now) / Math.max(1.0, averageCostNanos)));
+            int ran = 0;
+            Runnable op;
+            while (ran < batch && (op = queue.poll()) != null) {
+                pending.decrementAndGet();
+                runSafely(op);
+                ran++;
+            }
+            long after = System.nanoTime();
+            if (ran > 0) {
+                double cost = (double) (after - now) / ran;
+                averageCostNanos = averageCostNanos * 0.8 + cost * 0.2;
+            }
+            now = after;
+        }
+    }
+
+    private void runSafely(Runnable op) {
+        try {
+            op.run();
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "A queued statistics change failed", e);
+        }
+    }
+}
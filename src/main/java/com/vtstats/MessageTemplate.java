@@ -0,0 +1,92 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message split once into literal text and {@code {name}} placeholder slots, with colors already
+ * translated. Rendering fills the slots in a single pass over a per-thread builder.
+ */
+public final class MessageTemplate {
+
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private final String[] literals;
+    private final String[] slots;
+    private final String plain;
+
+    private MessageTemplate(String[] literals, String[] slots, String plain) {
+        this.literals = literals;
+        this.slots = slots;
+        this.plain = plain;
+    }
+
+    /**
+     * @param text the message with colors translated; {@code {name}} marks a placeholder
+     */
+    public static MessageTemplate compile(String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        int start = 0;
+        int open;
+        while ((open = text.indexOf('{', start)) >= 0) {
+            int close = text.indexOf('}', open + 1);
+            if (close < 0) break;
+            String name = text.substring(open + 1, close);
+            if (name.isEmpty() || name.indexOf('{') >= 0 || name.indexOf(' ') >= 0) {
+                // Not a placeholder; keep the brace as text and continue after it.
+                int next = text.indexOf('{', open + 1);
+                if (next < 0) break;
+                literals.add(text.substring(start, next));
+                slots.add(null);
+                start = next;
+                continue;
+            }
+            literals.add(text.substring(start, open));
+            slots.add(name);
+            start = close + 1;
+        }
+        literals.add(text.substring(start));
+        return new MessageTemplate(literals.toArray(new String[0]), slots.toArray(new String[0]), text);
+    }
+
+    /**
+     * @param placeholders alternating names (without braces) and values; slots without a value are left as written
+     */
+    public String render(String... placeholders) {
+        if (slots.length == 0 || placeholders.length == 0) return plain;
+        StringBuilder out = BUILDER.get();
+        out.setLength(0);
+        for (int i = 0; i < slots.length; i++) {
+            out.append(literals[i]);
+            String slot = slots[i];
+            if (slot == null) continue;
+            String value = null;
+            for (int j = 0; j + 1 < placeholders.length; j += 2) {
+                if (slot.equals(placeholders[j])) {
+                    value = placeholders[j + 1];
+                    break;
+                }
+            }
+            if (value != null) {
+                out.append(value);
+            } else {
+                out.append('{').append(slot).append('}');
+            }
+        }
+        out.append(literals[slots.length]);
+        return out.toString();
+    }
+
+    @Override
+    public String toString() {
+        return plain;
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts and times VtStats operations in fixed latency histograms, shown by {@code /vtstats perf} and written
+ * periodically to {@code metrics/vtstats.prom} in the Prometheus text format, for node exporter's textfile collector.
+ * <p>
+ * Callers wrap an operation in {@code long start = metrics.start(); ... metrics.record(Metric.X, start);}.
+ * Recording allocates nothing: it increments two slots of one preallocated array. With metrics disabled,
+ * {@link #start} returns without reading the clock and {@link #record} returns straight away.
+ */
+public class MetricsManager {
+
+    /**
+     * What is timed. Metrics of the same family must be declared next to each other.
+     */
+    public enum Metric {
+        COMMAND("command", "vtstats_command_seconds", "", "Time spent handling /vtstats commands"),
+        TAB_COMPLETE("tab complete", "vtstats_tab_complete_seconds", "", "Time spent computing /vtstats tab completions"),
+        STAT_GET_ONLINE("stat get (online)", "vtstats_stat_get_seconds", "mode=\"online\"", "Time to read stats of one player"),
+        STAT_GET_OFFLINE("stat get (offline)", "vtstats_stat_get_seconds", "mode=\"offline\"", null),
+        STAT_SET_ONLINE("stat set (online)", "vtstats_stat_set_seconds", "mode=\"online\"", "Time to write stats of one player"),
+        STAT_SET_OFFLINE("stat set (offline)", "vtstats_stat_set_seconds", "mode=\"offline\"", null),
+        BACKUP_COLLECT("backup: collect", "vtstats_backup_phase_seconds", "phase=\"collect\"", "Time spent in each phase of a backup"),
+        BACKUP_FINISH("backup: finish", "vtstats_backup_phase_seconds", "phase=\"finish\"", null),
+        BACKUP_PRUNE("backup: prune", "vtstats_backup_phase_seconds", "phase=\"prune\"", null),
+        RESTORE_VERIFY("restore: verify", "vtstats_restore_phase_seconds", "phase=\"verify\"", "Time spent in each phase of a restore"),
+        RESTORE_APPLY("restore: apply", "vtstats_restore_phase_seconds", "phase=\"apply\"", null),
+        RESTORE_REPLAY("restore: replay", "vtstats_restore_phase_seconds", "phase=\"replay\"", null),
+        LOG_WRITE("log write", "vtstats_log_write_seconds", "", "Time to write a batch of queued log lines");
+
+        private final String displayName;
+        private final String family;
+        private final String labels;
+        private final String help;
+
+        Metric(String displayName, String family, String labels, String help) {
+            this.displayName = displayName;
+            this.family = family;
+            this.labels = labels;
+            this.help = help;
+        }
+    }
+
+    /** Bucket {@code i} counts durations up to {@code 2^(MIN_BUCKET_BITS + i)} ns, about 1 microsecond to 17 s; the last one is +Inf. */
+    private static final int MIN_BUCKET_BITS = 10;
+    private static final int BUCKETS = 25;
+    private static final int STRIDE = BUCKETS + 2;
+    private static final int SUM = BUCKETS + 1;
+    private static final long DISABLED = Long.MIN_VALUE;
+    private static final Metric[] METRICS = Metric.values();
+
+    private final VtStats plugin;
+    private final File promFile;
+    private final AtomicLongArray data = new AtomicLongArray(METRICS.length * STRIDE);
+    private volatile boolean enabled;
+    private BukkitTask exportTask;
+    private long exportIntervalSeconds;
+
+    public MetricsManager(VtStats plugin) {
+        this.plugin = plugin;
+        this.promFile = new File(plugin.getDataFolder(), "metrics/vtstats.prom");
+        loadSettings();
+    }
+
+    /**
+     * Turns recording on or off and restarts the export timer if its interval changed.
+     */
+    public void loadSettings() {
+        PluginSettings settings = plugin.getSettings();
+        enabled = settings.isMetricsEnabled();
+        long interval = enabled ? settings.getMetricsExportIntervalSeconds() : 0;
+        if (interval == exportIntervalSeconds && (exportTask != null || interval == 0)) return;
+        if (exportTask != null) {
+            exportTask.cancel();
+            exportTask = null;
+        }
+        exportIntervalSeconds = interval;
+        if (interval > 0) {
+            long ticks = interval * 20;
+            exportTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::export, ticks, ticks);
+        }
+    }
+
+    /**
+     * @return a start time to pass to {@link #record}
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    public void record(Metric metric, long start) {
+        if (start == DISABLED) return;
+        long nanos = System.nanoTime() - start;
+        int base = metric.ordinal() * STRIDE;
+        data.incrementAndGet(base + bucketOf(nanos));
+        data.addAndGet(base + SUM, nanos);
+    }
+
+    private static int bucketOf(long nanos) {
+        if (nanos <= 1L << MIN_BUCKET_BITS) return 0;
+        return Math.min(BUCKETS, 64 - Long.numberOfLeadingZeros(nanos - 1) - MIN_BUCKET_BITS);
+    }
+
+    private static double upperBoundSeconds(int bucket) {
+        return (1L << (MIN_BUCKET_BITS + bucket)) / 1e9;
+    }
+
+    public void reset() {
+        for (int i = 0; i < data.length(); i++) data.set(i, 0);
+    }
+
+    /**
+     * Lists every metric that has been recorded, with its mean and the bucket bounds its p50 and p99 fall in.
+     */
+    public void showPerf(CommandSender sender, LangManager lang) {
+        if (!enabled) {
+            sender.sendMessage(lang.getPrefixedMessage("perf-disabled"));
+            return;
+        }
+        sender.sendMessage(lang.getPrefixedMessage("perf-header"));
+        long[] counts = new long[STRIDE];
+        for (Metric metric : METRICS) {
+            long count = snapshot(metric, counts);
+            if (count == 0) continue;
+            sender.sendMessage(lang.getMessage("perf-entry",
+                    "metric", metric.displayName,
+                    "count", String.valueOf(count),
+                    "avg", millis(counts[SUM] / 1e9 / count),
+                    "p50", quantile(counts, count, 0.5),
+                    "p99", quantile(counts, count, 0.99)));
+        }
+        AdaptiveThrottle throttle = plugin.getThrottle();
+        long rate = throttle.getBytesPerSecond();
+        sender.sendMessage(lang.getMessage("perf-throttle",
+                "mspt", String.format(Locale.ROOT, "%.1f", throttle.getMspt()),
+                "workers", String.valueOf(throttle.getWorkerLimit()),
+                "rate", rate > 0 ? String.format(Locale.ROOT, "%.1f MB/s", rate / 1048576.0) : "\u221e"));
+    }
+
+    /**
+     * Copies one metric's slots into {@code out}.
+     *
+     * @return its total count
+     */
+    private long snapshot(Metric metric, long[] out) {
+        int base = metric.ordinal() * STRIDE;
+        long count = 0;
+        for (int i = 0; i < STRIDE; i++) {
+            out[i] = data.get(base + i);
+            if (i != SUM) count += out[i];
+        }
+        return count;
+    }
+
+    private static String quantile(long[] counts, long count, double q) {
+        long rank = (long) Math.ceil(q * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return "\u2264" + millis(upperBoundSeconds(i));
+        }
+        return ">" + millis(upperBoundSeconds(BUCKETS - 1));
+    }
+
+    private static String millis(double seconds) {
+        return String.format(Locale.ROOT, "%.3f ms", seconds * 1000);
+    }
+
+    /**
+     * Writes every metric in the Prometheus text format and swaps the file in atomically, so a scrape never
+     * sees half a file.
+     */
+    private void export() {
+        StringBuilder out = new StringBuilder(8192);
+        long[] counts = new long[STRIDE];
+        String family = null;
+        for (Metric metric : METRICS) {
+            if (!metric.family.equals(family)) {
+                family = metric.family;
+                out.append("# HELP ").append(family).append(' ').append(metric.help).append('\n');
+                out.append("# TYPE ").append(family).append(" histogram\n");
+            }
+            long count = snapshot(metric, counts);
+            String labels = metric.labels.isEmpty() ? "" : metric.labels + ",";
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulative += counts[i];
+                out.append(family).append("_bucket{").append(labels).append("le=\"")
+                        .append(upperBoundSeconds(i)).append("\"} ").append(cumulative).append('\n');
+            }
+            out.append(family).append("_bucket{").append(labels).append("le=\"+Inf\"} ").append(count).append('\n');
+            String suffix = metric.labels.isEmpty() ? "" : "{" + metric.labels + "}";
+            out.append(family).append("_sum").append(suffix).append(' ').append(counts[SUM] / 1e9).append('\n');
+            out.append(family).append("_count").append(suffix).append(' ').append(count).append('\n');
+        }
+        AdaptiveThrottle throttle = plugin.getThrottle();
+        gauge(out, "vtstats_server_mspt", "Average server tick time seen by the throttle", throttle.getMspt());
+        gauge(out, "vtstats_throttle_worker_limit", "Files background work may handle at once", throttle.getWorkerLimit());
+        gauge(out, "vtstats_throttle_io_bytes_per_second", "Disk rate limit for background work, 0 if unlimited",
+                throttle.getBytesPerSecond());
+        gauge(out, "vtstats_jobs_running", "Background jobs currently running", plugin.getJobManager().getJobs().size());
+
+        try {
+            File dir = promFile.getParentFile();
+            if (!dir.exists()) dir.mkdirs();
+            Path tmp = new File(dir, promFile.getName() + ".tmp").toPath();
+            Files.write(tmp, out.toString().getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(tmp, promFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, promFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not write " + promFile.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, double value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    public void shutdown() {
+        if (exportTask != null) {
+            exportTask.cancel();
+            exportTask = null;
+        }
+        if (enabled && exportIntervalSeconds > 0) export();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Names of online players sorted case-insensitively, kept current on join and quit, for prefix completion.
+ */
+public class PlayerNameIndex implements Listener {
+
+    private final ConcurrentSkipListMap<String, String> names = new ConcurrentSkipListMap<>();
+
+    public PlayerNameIndex() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            names.put(player.getName().toLowerCase(), player.getName());
+        }
+    }
+
+    /**
+     * Adds the names starting with {@code prefix}, ignoring case, until {@code out} holds {@code limit} items.
+     *
+     * @param prefix a lower case prefix
+     */
+    public void collect(String prefix, List<String> out, int limit) {
+        for (Map.Entry<String, String> entry : names.tailMap(prefix).entrySet()) {
+            if (out.size() >= limit || !entry.getKey().startsWith(prefix)) break;
+            out.add(entry.getValue());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        names.put(event.getPlayer().getName().toLowerCase(), event.getPlayer().getName());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        names.remove(event.getPlayer().getName().toLowerCase());
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+/**
+ * In-memory name to UUID index of every player the server knows, so commands never resolve a name on
+ * the main thread. Filled asynchronously at startup from the players with saved data and the stats folder,
+ * taking their latest names from {@code usercache.json}, and kept current on join. The user cache also holds
+ * players who were only looked up and never joined, so its other entries are ignored. Unknown names are looked
+ * up off the main thread.
+ */
+public class PlayerResolver implements Listener {
+
+    private final JavaPlugin plugin;
+    private final StatsFileManager statsFiles;
+    private final Map<String, UUID> uuidsByName = new ConcurrentHashMap<>();
+    private final Map<UUID, String> namesByUuid = new ConcurrentHashMap<>();
+    private final CountDownLatch ready = new CountDownLatch(1);
+
+    public PlayerResolver(JavaPlugin plugin, StatsFileManager statsFiles) {
+        this.plugin = plugin;
+        this.statsFiles = statsFiles;
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            put(player.getUniqueId(), player.getName());
+        }
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, this::build);
+    }
+
+    private void build() {
+        try {
+            long start = System.currentTimeMillis();
+            OfflinePlayer[] offlinePlayers = Bukkit.getOfflinePlayers();
+            List<UUID> stored = statsFiles.listStoredPlayers();
+            Set<UUID> known = new HashSet<>(stored);
+            for (OfflinePlayer player : offlinePlayers) known.add(player.getUniqueId());
+            readUserCache(known);
+            for (OfflinePlayer player : offlinePlayers) {
+                if (player.getName() != null) putIfAbsent(player.getUniqueId(), player.getName());
+            }
+            for (UUID uuid : stored) {
+                if (namesByUuid.containsKey(uuid)) continue;
+                String name = Bukkit.getOfflinePlayer(uuid).getName();
+                if (name != null) putIfAbsent(uuid, name);
+            }
+            plugin.getLogger().info("Indexed " + namesByUuid.size() + " player names in " + (System.currentTimeMillis() - start) + " ms.");
+        } finally {
+            ready.countDown();
+        }
+    }
+
+    /**
+     * Blocks until the startup index is built. Must not be called on the main thread.
+     */
+    public void awaitReady() throws InterruptedException {
+        ready.await();
+    }
+
+    @SuppressWarnings("deprecation")
+    private void readUserCache(Set<UUID> known) {
+        File userCache = new File(Bukkit.getWorldContainer(), "usercache.json");
+        if (!userCache.exists()) userCache = new File("usercache.json");
+        if (!userCache.exists()) return;
+        try (Reader reader = Files.newBufferedReader(userCache.toPath(), StandardCharsets.UTF_8)) {
+            JsonElement root = new JsonParser().parse(reader);
+            if (root == null || !root.isJsonArray()) return;
+            for (JsonElement element : root.getAsJsonArray()) {
+                if (!element.isJsonObject()) continue;
+                JsonObject entry = element.getAsJsonObject();
+                if (!entry.has("name") || !entry.has("uuid")) continue;
+                try {
+                    UUID uuid = UUID.fromString(entry.get("uuid").getAsString());
+                    if (known.contains(uuid)) putIfAbsent(uuid, entry.get("name").getAsString());
+                } catch (IllegalArgumentException ignored) {}
+            }
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().warning("Could not read usercache.json: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the UUID of a known player with that name, ignoring case, or null
+     */
+    public UUID getUniqueId(String name) {
+        return uuidsByName.get(name.toLowerCase());
+    }
+
+    /**
+     * @return the last known name of the player, or null
+     */
+    public String getName(UUID uuid) {
+        return namesByUuid.get(uuid);
+    }
+
+    /**
+     * Resolves a player name and runs {@code callback} on the main thread with the player, or with null if no
+     * player of that name has played here. Known names are answered from the index without waiting for a
+     * lookup, straight away when called on the main thread; anything else is looked up on an async task.
+     */
+    @SuppressWarnings("deprecation")
+    public void resolve(String name, Consumer<OfflinePlayer> callback) {
+        UUID known = getUniqueId(name);
+        if (known != null) {
+            OfflinePlayer player = Bukkit.getOfflinePlayer(known);
+            if (Bukkit.isPrimaryThread()) {
+                callback.accept(player);
+            } else {
+                Bukkit.getScheduler().runTask(plugin, () -> callback.accept(player));
+            }
+            return;
+        }
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            OfflinePlayer player = Bukkit.getOfflinePlayer(name);
+            boolean found = player.hasPlayedBefore() || player.isOnline();
+            if (found && player.getName() != null) {
+                putIfAbsent(player.getUniqueId(), player.getName());
+            }
+            Bukkit.getScheduler().runTask(plugin, () -> callback.accept(found ? player : null));
+        });
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        put(event.getPlayer().getUniqueId(), event.getPlayer().getName());
+    }
+
+    private void put(UUID uuid, String name) {
+        String previous = namesByUuid.put(uuid, name);
+        if (previous != null && !previous.equalsIgnoreCase(name)) {
+            uuidsByName.remove(previous.toLowerCase(), uuid);
+        }
+        uuidsByName.put(name.toLowerCase(), uuid);
+    }
+
+    private void putIfAbsent(UUID uuid, String name) {
+        if (namesByUuid.putIfAbsent(uuid, name) == null) {
+            uuidsByName.putIfAbsent(name.toLowerCase(), uuid);
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.Statistic;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Immutable, typed view of config.yml. A new instance is built on enable and on every reload and
+ * published by {@link VtStats#getSettings()}, so commands and jobs read settings without touching the
+ * config tree and always see one consistent version of it.
+ */
+public final class PluginSettings {
+
+    private final StatCatalog catalog;
+
+    private final boolean confirmationRequired;
+    private final int confirmationTimeoutSeconds;
+
+    private final boolean loggingEnabled;
+    private final boolean logToFile;
+    private final boolean auditEnabled;
+    private final long logFlushIntervalMillis;
+    private final long logRotationMaxBytes;
+    private final boolean logRotationDaily;
+    private final boolean logRotationCompress;
+    private final int logRotationMaxFiles;
+
+    private final boolean autoBackupOnReset;
+    private final int maxBackups;
+    private final String backupFormat;
+    private final int backupCompression;
+    private final int backupWorkerThreads;
+    private final int backupQueueSize;
+    private final long backupProgressIntervalMillis;
+    private final boolean backupVerifyNightly;
+    private final LocalTime backupVerifyTime;
+
+    private final double tickBudgetMillis;
+    private final boolean throttleEnabled;
+    private final double throttleBackoffMspt;
+    private final double throttleIdleMspt;
+    private final int throttleMinWorkers;
+    private final int throttleMaxWorkers;
+    private final long throttleMinBytesPerSecond;
+    private final long throttleMaxBytesPerSecond;
+    private final boolean metricsEnabled;
+    private final long metricsExportIntervalSeconds;
+
+    private final List<String> leaderboardStats;
+    private final long aggregateCacheMillis;
+
+    private final boolean samplingEnabled;
+    private final long samplingIntervalMinutes;
+    private final List<String> samplingStats;
+    private final int samplingFullResolutionDays;
+    private final int samplingKeepDays;
+
+    private final boolean journalEnabled;
+    private final long journalCommitIntervalMillis;
+    private final List<String> journalEvents;
+
+    private final Set<Statistic> protectedStats;
+    private final BitSet protectedIndices;
+
+    private PluginSettings(FileConfiguration config, StatCatalog catalog, Logger logger) {
+        this.catalog = catalog;
+
+        this.confirmationRequired = config.getBoolean("confirmation.required", true);
+        this.confirmationTimeoutSeconds = config.getInt("confirmation.timeout-seconds", 30);
+
+        this.loggingEnabled = config.getBoolean("logging.enable", true);
+        this.logToFile = config.getBoolean("logging.log-to-file", true);
+        this.auditEnabled = config.getBoolean("logging.audit", true);
+        this.logFlushIntervalMillis = Math.max(50, config.getLong("logging.flush-interval-ms", 1000));
+        this.logRotationMaxBytes = Math.max(0, config.getLong("logging.rotation.max-size-mb", 10)) * 1024 * 1024;
+        this.logRotationDaily = config.getBoolean("logging.rotation.daily", true);
+        this.logRotationCompress = config.getBoolean("logging.rotation.compress", true);
+        this.logRotationMaxFiles = config.getInt("logging.rotation.max-files", 30);
+
+        this.autoBackupOnReset = config.getBoolean("backup.auto-backup-on-reset", true);
+        this.maxBackups = config.getInt("backup.max-backups", 10);
+        this.backupFormat = config.getString("backup.format", "incremental");
+        this.backupCompression = SnapshotFormat.parseCompression(config.getString("backup.compression", "deflate"));
+        this.backupWorkerThreads = config.getInt("backup.worker-threads", 0);
+        this.backupQueueSize = config.getInt("backup.queue-size", 256);
+        this.backupProgressIntervalMillis = config.getLong("backup.progress-interval-seconds", 10) * 1000;
+        this.backupVerifyNightly = config.getBoolean("backup.verify-nightly", true);
+        LocalTime verifyTime;
+        try {
+            verifyTime = LocalTime.parse(config.getString("backup.verify-time", "04:00"));
+        } catch (DateTimeParseException e) {
+            logger.warning("Invalid backup.verify-time '" + config.getString("backup.verify-time") + "', using 04:00.");
+            verifyTime = LocalTime.of(4, 0);
+        }
+        this.backupVerifyTime = verifyTime;
+
+        this.tickBudgetMillis = config.getDouble("performance.tick-budget-ms", 5);
+        this.throttleEnabled = config.getBoolean("performance.throttle.enable", true);
+        this.throttleBackoffMspt = config.getDouble("performance.throttle.backoff-mspt", 40);
+        this.throttleIdleMspt = config.getDouble("performance.throttle.idle-mspt", 25);
+        this.throttleMinWorkers = config.getInt("performance.throttle.min-workers", 1);
+        this.throttleMaxWorkers = config.getInt("performance.throttle.max-workers", 0);
+        this.throttleMinBytesPerSecond = (long) (config.getDouble("performance.throttle.min-io-mb-per-second", 1) * 1024 * 1024);
+        this.throttleMaxBytesPerSecond = (long) (config.getDouble("performance.throttle.max-io-mb-per-second", 0) * 1024 * 1024);
+        this.metricsEnabled = config.getBoolean("performance.metrics.enable", true);
+        this.metricsExportIntervalSeconds = Math.max(0, config.getLong("performance.metrics.prometheus-interval-seconds", 30));
+
+        Set<String> leaderboards = new LinkedHashSet<>();
+        for (String key : config.getStringList("leaderboards.stats")) {
+            if (catalog.indexOf(key.toUpperCase()) >= 0) {
+                leaderboards.add(key.toUpperCase());
+            } else {
+                logger.warning("Unknown leaderboard stat '" + key + "', it will not be tracked.");
+            }
+        }
+        this.leaderboardStats = Collections.unmodifiableList(new ArrayList<>(leaderboards));
+        this.aggregateCacheMillis = Math.max(0, config.getLong("aggregate.cache-seconds", 60)) * 1000;
+
+        this.samplingEnabled = config.getBoolean("sampling.enable", true);
+        this.samplingIntervalMinutes = Math.max(1, config.getLong("sampling.interval-minutes", 5));
+        this.samplingFullResolutionDays = Math.max(0, config.getInt("sampling.full-resolution-days", 7));
+        this.samplingKeepDays = Math.max(0, config.getInt("sampling.keep-days", 90));
+        Set<String> sampled = new LinkedHashSet<>();
+        for (String key : config.getStringList("sampling.stats")) {
+            if (catalog.indexOf(key.toUpperCase()) >= 0) {
+                sampled.add(key.toUpperCase());
+            } else {
+                logger.warning("Unknown sampled stat '" + key + "', it will not be sampled.");
+            }
+        }
+        this.samplingStats = Collections.unmodifiableList(new ArrayList<>(sampled));
+
+        this.journalEnabled = config.getBoolean("journal.enable", true);
+        this.journalCommitIntervalMillis = Math.max(10, config.getLong("journal.commit-interval-ms", 200));
+        Set<String> journaled = new LinkedHashSet<>();
+        for (String entry : config.getStringList("journal.events")) {
+            String key = entry.toUpperCase();
+            if (catalog.indexOf(key) >= 0) {
+                journaled.add(key);
+                continue;
+            }
+            try {
+                Statistic.valueOf(key);
+                journaled.add(key);
+            } catch (IllegalArgumentException e) {
+                logger.warning("Unknown journaled stat '" + entry + "', its increments will not be journaled.");
+            }
+        }
+        this.journalEvents = Collections.unmodifiableList(new ArrayList<>(journaled));
+
+        EnumSet<Statistic> stats = EnumSet.noneOf(Statistic.class);
+        BitSet indices = new BitSet(catalog.size());
+        for (String entry : config.getStringList("protected-stats")) {
+            String key = entry.toUpperCase();
+            if (key.contains(":")) {
+                int index = catalog.indexOf(key);
+                if (index >= 0) {
+                    indices.set(index);
+                    continue;
+                }
+            } else {
+                try {
+                    stats.add(Statistic.valueOf(key));
+                    continue;
+                } catch (IllegalArgumentException ignored) {}
+            }
+            logger.warning("Unknown protected stat '" + entry + "', it is ignored.");
+        }
+        this.protectedStats = Collections.unmodifiableSet(stats);
+        this.protectedIndices = indices;
+    }
+
+    public static PluginSettings load(FileConfiguration config, StatCatalog catalog, Logger logger) {
+        return new PluginSettings(config, catalog, logger);
+    }
+
+    public boolean isConfirmationRequired() {
+        return confirmationRequired;
+    }
+
+    public int getConfirmationTimeoutSeconds() {
+        return confirmationTimeoutSeconds;
+    }
+
+    public boolean isLoggingEnabled() {
+        return loggingEnabled;
+    }
+
+    public boolean isLogToFile() {
+        return logToFile;
+    }
+
+    public boolean isAuditEnabled() {
+        return auditEnabled;
+    }
+
+    public long getLogFlushIntervalMillis() {
+        return logFlushIntervalMillis;
+    }
+
+    public long getLogRotationMaxBytes() {
+        return logRotationMaxBytes;
+    }
+
+    public boolean isLogRotationDaily() {
+        return logRotationDaily;
+    }
+
+    public boolean isLogRotationCompress() {
+        return logRotationCompress;
+    }
+
+    public int getLogRotationMaxFiles() {
+        return logRotationMaxFiles;
+    }
+
+    public boolean isAutoBackupOnReset() {
+        return autoBackupOnReset;
+    }
+
+    public int getMaxBackups() {
+        return maxBackups;
+    }
+
+    public String getBackupFormat() {
+        return backupFormat;
+    }
+
+    public int getBackupCompression() {
+        return backupCompression;
+    }
+
+    public int getBackupWorkerThreads() {
+        return backupWorkerThreads;
+    }
+
+    public int getBackupQueueSize() {
+        return backupQueueSize;
+    }
+
+    public long getBackupProgressIntervalMillis() {
+        return backupProgressIntervalMillis;
+    }
+
+    public boolean isBackupVerifyNightly() {
+        return backupVerifyNightly;
+    }
+
+    public LocalTime getBackupVerifyTime() {
+        return backupVerifyTime;
+    }
+
+    public double getTickBudgetMillis() {
+        return tickBudgetMillis;
+    }
+
+    public boolean isThrottleEnabled() {
+        return throttleEnabled;
+    }
+
+    public double getThrottleBackoffMspt() {
+        return throttleBackoffMspt;
+    }
+
+    public double getThrottleIdleMspt() {
+        return throttleIdleMspt;
+    }
+
+    public int getThrottleMinWorkers() {
+        return throttleMinWorkers;
+    }
+
+    /**
+     * @return the worker ceiling, or 0 for the number of CPU cores
+     */
+    public int getThrottleMaxWorkers() {
+        return throttleMaxWorkers;
+    }
+
+    public long getThrottleMinBytesPerSecond() {
+        return throttleMinBytesPerSecond;
+    }
+
+    /**
+     * @return the disk rate ceiling, or 0 for no limit while the server is healthy
+     */
+    public long getThrottleMaxBytesPerSecond() {
+        return throttleMaxBytesPerSecond;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * @return how often metrics are written to the Prometheus file, or 0 to not write it
+     */
+    public long getMetricsExportIntervalSeconds() {
+        return metricsExportIntervalSeconds;
+    }
+
+    /**
+     * @return valid leaderboard stat keys in command form, upper case, in config order
+     */
+    public List<String> getLeaderboardStats() {
+        return leaderboardStats;
+    }
+
+    public long getAggregateCacheMillis() {
+        return aggregateCacheMillis;
+    }
+
+    public boolean isSamplingEnabled() {
+        return samplingEnabled;
+    }
+
+    public long getSamplingIntervalMinutes() {
+        return samplingIntervalMinutes;
+    }
+
+    /**
+     * @return valid sampled stat keys in command form, upper case, in config order
+     */
+    public List<String> getSamplingStats() {
+        return samplingStats;
+    }
+
+    public int getSamplingFullResolutionDays() {
+        return samplingFullResolutionDays;
+    }
+
+    public int getSamplingKeepDays() {
+        return samplingKeepDays;
+    }
+
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    public long getJournalCommitIntervalMillis() {
+        return journalCommitIntervalMillis;
+    }
+
+    /**
+     * @return stat keys or plain statistic names whose increments are journaled, upper case
+     */
+    public List<String> getJournalEvents() {
+        return journalEvents;
+    }
+
+    public Set<Statistic> getProtectedStats() {
+        return protectedStats;
+    }
+
+    /**
+     * @return true if the whole statistic or this particular qualifier is protected
+     */
+    public boolean isProtected(int index) {
+        return protectedStats.contains(catalog.getStatistic(index)) || protectedIndices.get(index);
+    }
+}
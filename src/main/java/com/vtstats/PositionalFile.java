@@ -0,0 +1,93 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Checksum;
+
+/**
+ * A read-only file read with absolute positions, so only the bytes actually needed are read and several
+ * threads can share it. Unlike a memory mapping, {@link #close} releases the file at once, so a backup that
+ * was just read can be deleted straight away, on Windows too.
+ */
+public final class PositionalFile implements Closeable {
+
+    private static final int CHECKSUM_CHUNK = 64 * 1024;
+
+    private final File file;
+    private final FileChannel channel;
+    private final long size;
+
+    public PositionalFile(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long getLong(long position) throws IOException {
+        return read(position, 8).getLong();
+    }
+
+    public int getInt(long position) throws IOException {
+        return read(position, 4).getInt();
+    }
+
+    /**
+     * @return a new heap buffer holding {@code length} bytes from {@code position}
+     */
+    public ByteBuffer read(long position, int length) throws IOException {
+        check(position, length);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(buffer, position);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Feeds {@code length} bytes from {@code position} to the checksum in chunks.
+     */
+    public void update(Checksum checksum, long position, long length) throws IOException {
+        if (position < 0 || length < 0 || position + length > size) throw new EOFException("Unexpected end of " + file.getName());
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(CHECKSUM_CHUNK, Math.max(1, length)));
+        long end = position + length;
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            readFully(buffer, position);
+            buffer.flip();
+            position += buffer.remaining();
+            checksum.update(buffer);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new EOFException("Unexpected end of " + file.getName());
+            position += read;
+        }
+    }
+
+    private void check(long position, int length) throws EOFException {
+        if (position < 0 || length < 0 || position + length > size) throw new EOFException("Unexpected end of " + file.getName());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
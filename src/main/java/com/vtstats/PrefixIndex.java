@@ -0,0 +1,42 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable, sorted set of lower case completions. A prefix lookup is a binary search for the first
+ * match followed by a walk over the contiguous run of matches, so nothing is filtered or allocated per call.
+ */
+public final class PrefixIndex {
+
+    private final String[] entries;
+
+    public PrefixIndex(Collection<String> values) {
+        this.entries = values.stream().map(String::toLowerCase).distinct().sorted().toArray(String[]::new);
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * Adds the entries starting with {@code prefix}, in sorted order, until {@code out} holds {@code limit} items.
+     *
+     * @param prefix a lower case prefix
+     */
+    public void collect(String prefix, List<String> out, int limit) {
+        int i = Arrays.binarySearch(entries, prefix);
+        if (i < 0) i = -i - 1;
+        for (; i < entries.length && out.size() < limit && entries[i].startsWith(prefix); i++) {
+            out.add(entries[i]);
+        }
+    }
+}
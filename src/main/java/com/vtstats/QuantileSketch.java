@@ -0,0 +1,89 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch with a fixed relative error. Values are counted in logarithmic buckets,
+ * so any quantile it returns is within {@link #RELATIVE_ACCURACY} of the true value, and two sketches
+ * built over different players merge by adding their bucket counts.
+ */
+public final class QuantileSketch {
+
+    public static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    private long[] positive = new long[64];
+    private long[] negative = new long[0];
+    private long zeros;
+    private long count;
+
+    public void add(long value) {
+        if (value == 0) {
+            zeros++;
+        } else if (value > 0) {
+            positive = increment(positive, bucketOf(value));
+        } else {
+            negative = increment(negative, bucketOf(-(double) value));
+        }
+        count++;
+    }
+
+    public void merge(QuantileSketch other) {
+        positive = addAll(positive, other.positive);
+        negative = addAll(negative, other.negative);
+        zeros += other.zeros;
+        count += other.count;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @param q a quantile between 0 and 1, e.g. 0.9 for p90
+     * @return the approximate value at that quantile, or 0 if the sketch is empty
+     */
+    public long quantile(double q) {
+        if (count == 0) return 0;
+        long rank = (long) Math.floor(Math.max(0, Math.min(1, q)) * (count - 1));
+        for (int i = negative.length - 1; i >= 0; i--) {
+            rank -= negative[i];
+            if (rank < 0) return -valueOf(i);
+        }
+        rank -= zeros;
+        if (rank < 0) return 0;
+        for (int i = 0; i < positive.length; i++) {
+            rank -= positive[i];
+            if (rank < 0) return valueOf(i);
+        }
+        return valueOf(positive.length - 1);
+    }
+
+    private static int bucketOf(double value) {
+        return Math.max(0, (int) Math.ceil(Math.log(value) / LOG_GAMMA));
+    }
+
+    private static long valueOf(int bucket) {
+        return Math.round(2 * Math.pow(GAMMA, bucket) / (GAMMA + 1));
+    }
+
+    private static long[] increment(long[] buckets, int bucket) {
+        if (bucket >= buckets.length) buckets = Arrays.copyOf(buckets, Math.max(bucket + 1, buckets.length * 2));
+        buckets[bucket]++;
+        return buckets;
+    }
+
+    private static long[] addAll(long[] target, long[] source) {
+        if (source.length > target.length) target = Arrays.copyOf(target, source.length);
+        for (int i = 0; i < source.length; i++) target[i] += source[i];
+        return target;
+    }
+}
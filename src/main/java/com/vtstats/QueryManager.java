@@ -0,0 +1,219 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Finds players whose stats match a {@link StatQuery}. Every stats file is read by one parallel scan that
+ * keeps only the matches; online players are evaluated against their live values. Results of the last
+ * query of each sender are kept so they can be paged through.
+ */
+public class QueryManager {
+
+    public static final int PAGE_SIZE = 10;
+
+    private final VtStats plugin;
+    private final LangManager lang;
+    private final StatCatalog catalog;
+    private final StatsFileManager statsFiles;
+    private final PlayerResolver players;
+    private final Map<String, Result> lastResults = new ConcurrentHashMap<>();
+
+    public QueryManager(VtStats plugin, LangManager lang, StatCatalog catalog, StatsFileManager statsFiles, PlayerResolver players) {
+        this.plugin = plugin;
+        this.lang = lang;
+        this.catalog = catalog;
+        this.statsFiles = statsFiles;
+        this.players = players;
+    }
+
+    public StatQuery compile(String expression) {
+        return StatQuery.compile(expression, catalog);
+    }
+
+    /**
+     * Scans every player off the main thread and runs {@code callback} on the main thread with the matches.
+     * Must be called on the main thread.
+     *
+     * @param sortBy     the stat to sort by, or null to keep scan order
+     * @param descending sort direction, ignored without {@code sortBy}
+     * @param limit      the maximum number of matches, or 0 for all of them; without {@code sortBy} the scan
+     *                   stops reading files once enough matches are found
+     */
+    public void find(StatQuery query, StatQuery.Operand sortBy, boolean descending, int limit, Consumer<Result> callback) {
+        Set<UUID> online = new HashSet<>();
+        for (Player player : Bukkit.getOnlinePlayers()) online.add(player.getUniqueId());
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            long start = System.currentTimeMillis();
+            Set<UUID> uuids = new LinkedHashSet<>(statsFiles.listStoredPlayers());
+            uuids.addAll(online);
+            ConcurrentLinkedQueue<Match> matches = new ConcurrentLinkedQueue<>();
+            AtomicInteger found = new AtomicInteger();
+            boolean stopEarly = sortBy == null && limit > 0;
+            // Blocking reads; see VtStats#getScanPool.
+            plugin.getScanPool().submit(() -> uuids.parallelStream().forEach(uuid -> {
+                if (stopEarly && found.get() >= limit) return;
+                try {
+                    StatHolder holder = online.contains(uuid) ? statsFiles.open(Bukkit.getOfflinePlayer(uuid)) : statsFiles.load(uuid);
+                    if (!query.test(holder)) return;
+                    if (stopEarly && found.incrementAndGet() > limit) return;
+                    matches.add(new Match(uuid, sortBy != null ? sortBy.get(holder) : 0));
+                } catch (IOException e) {
+                    plugin.getLogger().warning("Could not read stats of " + uuid + " for a query: " + e.getMessage());
+                }
+            })).join();
+
+            List<Match> list = new ArrayList<>(matches);
+            if (sortBy != null) {
+                Comparator<Match> order = Comparator.comparingLong(Match::getValue);
+                list.sort(descending ? order.reversed() : order);
+                if (limit > 0 && list.size() > limit) list = new ArrayList<>(list.subList(0, limit));
+            }
+            Result result = new Result(query, sortBy != null, Collections.unmodifiableList(list), uuids.size(),
+                    System.currentTimeMillis() - start);
+            Bukkit.getScheduler().runTask(plugin, () -> callback.accept(result));
+        });
+    }
+
+    /**
+     * Runs a query for a command sender, remembers the result and shows its first page.
+     */
+    public void query(CommandSender sender, StatQuery query, StatQuery.Operand sortBy, boolean descending, int limit) {
+        sender.sendMessage(lang.getPrefixedMessage("query-started", "query", query.getExpression()));
+        find(query, sortBy, descending, limit, result -> {
+            lastResults.put(sender.getName(), result);
+            showPage(sender, result, 1);
+        });
+    }
+
+    /**
+     * Shows a page of the sender's last query result.
+     */
+    public void showPage(CommandSender sender, int page) {
+        Result result = lastResults.get(sender.getName());
+        if (result == null) {
+            sender.sendMessage(lang.getPrefixedMessage("query-no-result"));
+            return;
+        }
+        showPage(sender, result, page);
+    }
+
+    private void showPage(CommandSender sender, Result result, int page) {
+        List<Match> matches = result.getMatches();
+        if (matches.isEmpty()) {
+            sender.sendMessage(lang.getPrefixedMessage("query-empty",
+                    "query", result.getQuery().getExpression(),
+                    "scanned", String.valueOf(result.getScanned())));
+            return;
+        }
+        int pages = (matches.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+        int current = Math.max(1, Math.min(pages, page));
+        sender.sendMessage(lang.getPrefixedMessage("query-header",
+                "query", result.getQuery().getExpression(),
+                "count", String.valueOf(matches.size()),
+                "scanned", String.valueOf(result.getScanned()),
+                "time", String.valueOf(result.getMillis()),
+                "page", String.valueOf(current),
+                "pages", String.valueOf(pages)));
+        int from = (current - 1) * PAGE_SIZE;
+        int to = Math.min(matches.size(), from + PAGE_SIZE);
+        for (int i = from; i < to; i++) {
+            Match match = matches.get(i);
+            String name = players.getName(match.getUniqueId());
+            String entry = name != null ? name : match.getUniqueId().toString();
+            if (result.isSorted()) {
+                sender.sendMessage(lang.getMessage("query-entry-sorted",
+                        "rank", String.valueOf(i + 1), "player", entry, "value", String.valueOf(match.getValue())));
+            } else {
+                sender.sendMessage(lang.getMessage("query-entry", "rank", String.valueOf(i + 1), "player", entry));
+            }
+        }
+        if (current < pages) {
+            sender.sendMessage(lang.getMessage("query-next-page", "page", String.valueOf(current + 1)));
+        }
+    }
+
+    public static final class Match {
+        private final UUID uuid;
+        private final long value;
+
+        private Match(UUID uuid, long value) {
+            this.uuid = uuid;
+            this.value = value;
+        }
+
+        public UUID getUniqueId() {
+            return uuid;
+        }
+
+        /**
+         * @return the value of the sort stat, or 0 if the query was not sorted
+         */
+        public long getValue() {
+            return value;
+        }
+    }
+
+    public static final class Result {
+        private final StatQuery query;
+        private final boolean sorted;
+        private final List<Match> matches;
+        private final int scanned;
+        private final long millis;
+
+        private Result(StatQuery query, boolean sorted, List<Match> matches, int scanned, long millis) {
+            this.query = query;
+            this.sorted = sorted;
+            this.matches = matches;
+            this.scanned = scanned;
+            this.millis = millis;
+        }
+
+        public StatQuery getQuery() {
+            return query;
+        }
+
+        public boolean isSorted() {
+            return sorted;
+        }
+
+        public List<Match> getMatches() {
+            return matches;
+        }
+
+        /**
+         * @return how many players were considered
+         */
+        public int getScanned() {
+            return scanned;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+}
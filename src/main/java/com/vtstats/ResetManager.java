@@ -0,0 +1,219 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.command.CommandSender;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class ResetManager {
+
+    private final VtStats plugin;
+    private final LangManager lang;
+    private final LogManager logger;
+    private final StatCatalog catalog;
+    private final StatsFileManager statsFiles;
+    private final MainThreadApplier applier;
+    private final JobManager jobManager;
+
+    public ResetManager(VtStats plugin, LangManager lang, LogManager logger, StatCatalog catalog,
+                        StatsFileManager statsFiles, MainThreadApplier applier, JobManager jobManager) {
+        this.plugin = plugin;
+        this.lang = lang;
+        this.logger = logger;
+        this.catalog = catalog;
+        this.statsFiles = statsFiles;
+        this.applier = applier;
+        this.jobManager = jobManager;
+        jobManager.registerType("reset-player", true, this::runResetAllForPlayerJob);
+        jobManager.registerType("reset-stat", true, this::runResetSingleStatForAllPlayersJob);
+        jobManager.registerType("reset-all", true, this::runResetAllStatsForAllPlayersJob);
+        jobManager.registerType("reset-query", true, this::runResetMatchingJob);
+    }
+
+    public void resetAllForPlayer(CommandSender sender, OfflinePlayer target) {
+        logger.logChange(sender, "reset all", "N/A", target, null, null);
+        sender.sendMessage(lang.getPrefixedMessage("reset-all-success", "player", target.getName()));
+        jobManager.start(sender, "reset-player", Collections.singletonMap("player", target.getUniqueId().toString()));
+    }
+
+    public void resetStatForAllPlayers(CommandSender sender, String statArg) {
+        int index = catalog.indexOf(statArg.toUpperCase());
+        if (index < 0) {
+            sender.sendMessage(lang.getPrefixedMessage("stat-not-found", "stat", statArg));
+            return;
+        }
+        if (plugin.getSettings().isProtected(index)) {
+            sender.sendMessage(lang.getPrefixedMessage("stat-is-protected", "stat", statArg));
+            return;
+        }
+        logger.logAction(sender, "reset server", statArg, "ALL", null);
+        sender.sendMessage(lang.getPrefixedMessage("reset-all-players-start", "stat", statArg));
+        Job job = jobManager.start(sender, "reset-stat", Collections.singletonMap("stat", statArg));
+        sender.sendMessage(lang.getPrefixedMessage("job-started", "id", String.valueOf(job.getId()), "type", job.getType()));
+    }
+
+    public void resetAllStatsForAllPlayers(CommandSender sender) {
+        logger.logAction(sender, "reset all server", "N/A", "ALL", null);
+        sender.sendMessage(lang.getPrefixedMessage("reset-all-stats-for-all-players-start"));
+        Job job = jobManager.start(sender, "reset-all", Collections.emptyMap());
+        sender.sendMessage(lang.getPrefixedMessage("job-started", "id", String.valueOf(job.getId()), "type", job.getType()));
+    }
+
+    /**
+     * Resets one stat, or every unprotected stat when {@code statArg} is {@code all}, for the players matching the query.
+     */
+    public void resetForMatchingPlayers(CommandSender sender, String statArg, StatQuery query) {
+        boolean all = statArg.equalsIgnoreCase("all");
+        int index = all ? -1 : catalog.indexOf(statArg.toUpperCase());
+        if (!all && index < 0) {
+            sender.sendMessage(lang.getPrefixedMessage("stat-not-found", "stat", statArg));
+            return;
+        }
+        if (!all && plugin.getSettings().isProtected(index)) {
+            sender.sendMessage(lang.getPrefixedMessage("stat-is-protected", "stat", statArg));
+            return;
+        }
+        logger.logAction(sender, "reset query", statArg, "where " + query.getExpression(), null);
+        sender.sendMessage(lang.getPrefixedMessage("reset-query-start", "stat", statArg, "query", query.getExpression()));
+        Map<String, String> params = new HashMap<>();
+        params.put("stat", statArg);
+        params.put("query", query.getExpression());
+        Job job = jobManager.start(sender, "reset-query", params);
+        sender.sendMessage(lang.getPrefixedMessage("job-started", "id", String.valueOf(job.getId()), "type", job.getType()));
+    }
+
+    private void runResetAllForPlayerJob(Job job) throws InterruptedException {
+        UUID uuid = UUID.fromString(job.getParam("player"));
+        job.setTotal(1);
+        if (job.getPosition() > 0) return;
+        PluginSettings settings = plugin.getSettings();
+        job.lockPlayer(uuid);
+        try {
+            resetAllStats(Bukkit.getOfflinePlayer(uuid), settings);
+        } finally {
+            job.unlockPlayer(uuid);
+        }
+        job.advance();
+    }
+
+    private void runResetSingleStatForAllPlayersJob(Job job) throws InterruptedException {
+        String statArg = job.getParam("stat");
+        int index = catalog.indexOf(statArg.toUpperCase());
+        if (index < 0) throw new IllegalArgumentException("Unknown stat " + statArg);
+
+        List<OfflinePlayer> players = JobManager.playersInStableOrder();
+        job.setTotal(players.size());
+        for (int i = job.getPosition(); i < players.size(); i++) {
+            job.checkStopped();
+            OfflinePlayer p = players.get(i);
+            job.lockPlayer(p.getUniqueId());
+            try {
+                StatHolder holder = statsFiles.open(p);
+                holder.set(index, 0);
+                statsFiles.save(holder);
+            } catch (Exception e) {
+                plugin.getLogger().warning("Could not reset " + statArg + " for " + p.getUniqueId() + ": " + e.getMessage());
+            } finally {
+                job.unlockPlayer(p.getUniqueId());
+            }
+            job.advance();
+        }
+        CommandSender sender = job.getSender();
+        applier.submit(() -> sender.sendMessage(lang.getPrefixedMessage("reset-all-players-finish", "stat", statArg)));
+    }
+
+    private void runResetAllStatsForAllPlayersJob(Job job) throws InterruptedException {
+        PluginSettings settings = plugin.getSettings();
+        List<OfflinePlayer> players = JobManager.playersInStableOrder();
+        job.setTotal(players.size());
+        for (int i = job.getPosition(); i < players.size(); i++) {
+            job.checkStopped();
+            OfflinePlayer p = players.get(i);
+            job.lockPlayer(p.getUniqueId());
+            try {
+                resetAllStats(p, settings);
+            } finally {
+                job.unlockPlayer(p.getUniqueId());
+            }
+            job.advance();
+        }
+        CommandSender sender = job.getSender();
+        applier.submit(() -> sender.sendMessage(lang.getPrefixedMessage("reset-all-stats-for-all-players-finish")));
+    }
+
+    private void runResetMatchingJob(Job job) throws InterruptedException {
+        String statArg = job.getParam("stat");
+        boolean all = statArg.equalsIgnoreCase("all");
+        int index = all ? -1 : catalog.indexOf(statArg.toUpperCase());
+        if (!all && index < 0) throw new IllegalArgumentException("Unknown stat " + statArg);
+        StatQuery query = StatQuery.compile(job.getParam("query"), catalog);
+        PluginSettings settings = plugin.getSettings();
+
+        List<OfflinePlayer> players = JobManager.playersInStableOrder();
+        job.setTotal(players.size());
+        for (int i = job.getPosition(); i < players.size(); i++) {
+            job.checkStopped();
+            OfflinePlayer p = players.get(i);
+            job.lockPlayer(p.getUniqueId());
+            try {
+                StatHolder holder = statsFiles.open(p);
+                if (query.test(holder)) {
+                    job.incrementCounter("matched");
+                    if (all) {
+                        clearUnprotected(holder, settings);
+                    } else {
+                        holder.set(index, 0);
+                    }
+                    statsFiles.save(holder);
+                }
+            } catch (Exception e) {
+                plugin.getLogger().warning("Could not reset " + statArg + " for " + p.getUniqueId() + ": " + e.getMessage());
+            } finally {
+                job.unlockPlayer(p.getUniqueId());
+            }
+            job.advance();
+        }
+        CommandSender sender = job.getSender();
+        String count = String.valueOf(job.getCounter("matched"));
+        applier.submit(() -> sender.sendMessage(lang.getPrefixedMessage("reset-query-finish",
+                "stat", statArg, "query", query.getExpression(), "count", count)));
+    }
+
+    private void resetAllStats(OfflinePlayer p, PluginSettings settings) {
+        try {
+            StatHolder holder = statsFiles.open(p);
+            clearUnprotected(holder, settings);
+            statsFiles.save(holder);
+        } catch (Exception e) {
+            plugin.getLogger().warning("Could not reset stats for " + p.getUniqueId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Zeroes every stat that is not protected. Offline holders only visit the stats they actually have.
+     */
+    private void clearUnprotected(StatHolder holder, PluginSettings settings) {
+        if (holder.isOnline()) {
+            for (int i = 0; i < catalog.size(); i++) {
+                if (!settings.isProtected(i)) holder.set(i, 0);
+            }
+            return;
+        }
+        StatVector values = holder.toVector();
+        for (int i = 0; i < values.size(); i++) {
+            if (values.valueAt(i) != 0 && !settings.isProtected(values.keyAt(i))) holder.set(values.keyAt(i), 0);
+        }
+    }
+}
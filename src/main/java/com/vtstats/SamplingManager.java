@@ -0,0 +1,220 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Samples the stats listed under {@code sampling.stats} for every online player every
+ * {@code sampling.interval-minutes} and stores them in a {@link TimeSeriesStore}. A round reads the
+ * players a few at a time over as many ticks as it needs, using at most {@link #TICK_BUDGET_NANOS} per tick.
+ */
+public class SamplingManager {
+
+    private static final long TICK_BUDGET_NANOS = 1_000_000;
+    private static final int TREND_POINTS = 12;
+
+    private final VtStats plugin;
+    private final LangManager lang;
+    private final StatCatalog catalog;
+    private final TimeSeriesStore store;
+    private BukkitTask timer;
+    private BukkitTask captureTask;
+    private long intervalMinutes;
+    private volatile LocalDate lastRetention;
+
+    private String[] roundKeys;
+    private int[] roundIndices;
+    private UUID[] roundPlayers;
+    private int[][] roundValues;
+    private boolean[] roundCaptured;
+    private int roundCursor;
+    private long roundTime;
+
+    public SamplingManager(VtStats plugin, LangManager lang, StatCatalog catalog) {
+        this.plugin = plugin;
+        this.lang = lang;
+        this.catalog = catalog;
+        this.store = new TimeSeriesStore(new File(plugin.getDataFolder(), "samples"));
+        loadSettings();
+    }
+
+    /**
+     * Restarts the sampling timer if sampling was switched on or off or its interval changed.
+     */
+    public void loadSettings() {
+        PluginSettings settings = plugin.getSettings();
+        long interval = settings.isSamplingEnabled() && !settings.getSamplingStats().isEmpty() ? settings.getSamplingIntervalMinutes() : 0;
+        if (interval == intervalMinutes && (timer != null || interval == 0)) return;
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+        intervalMinutes = interval;
+        if (interval > 0) {
+            long ticks = interval * 60 * 20;
+            timer = Bukkit.getScheduler().runTaskTimer(plugin, this::startRound, ticks, ticks);
+        }
+    }
+
+    private void startRound() {
+        if (captureTask != null) return;
+        List<String> keys = plugin.getSettings().getSamplingStats();
+        List<Player> online = new ArrayList<>(Bukkit.getOnlinePlayers());
+        if (online.isEmpty()) return;
+
+        roundKeys = keys.toArray(new String[0]);
+        roundIndices = new int[roundKeys.length];
+        for (int i = 0; i < roundKeys.length; i++) roundIndices[i] = catalog.indexOf(roundKeys[i]);
+        roundPlayers = new UUID[online.size()];
+        for (int i = 0; i < roundPlayers.length; i++) roundPlayers[i] = online.get(i).getUniqueId();
+        roundValues = new int[roundKeys.length][roundPlayers.length];
+        roundCaptured = new boolean[roundPlayers.length];
+        roundCursor = 0;
+        roundTime = System.currentTimeMillis();
+        captureTask = Bukkit.getScheduler().runTaskTimer(plugin, this::captureSome, 0L, 1L);
+    }
+
+    private void captureSome() {
+        long deadline = System.nanoTime() + TICK_BUDGET_NANOS;
+        while (roundCursor < roundPlayers.length && System.nanoTime() < deadline) {
+            int i = roundCursor++;
+            Player player = Bukkit.getPlayer(roundPlayers[i]);
+            if (player == null) continue;
+            for (int s = 0; s < roundIndices.length; s++) {
+                roundValues[s][i] = catalog.getValue(player, roundIndices[s]);
+            }
+            roundCaptured[i] = true;
+        }
+        if (roundCursor < roundPlayers.length) return;
+        captureTask.cancel();
+        captureTask = null;
+        TimeSeriesStore.Block block = finishRound();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> write(block));
+    }
+
+    /**
+     * @return the round as a block, without the players who left before they were read
+     */
+    private TimeSeriesStore.Block finishRound() {
+        int count = 0;
+        for (boolean captured : roundCaptured) if (captured) count++;
+        UUID[] players = new UUID[count];
+        int[][] values = new int[roundKeys.length][count];
+        for (int i = 0, j = 0; i < roundPlayers.length; i++) {
+            if (!roundCaptured[i]) continue;
+            players[j] = roundPlayers[i];
+            for (int s = 0; s < roundKeys.length; s++) values[s][j] = roundValues[s][i];
+            j++;
+        }
+        TimeSeriesStore.Block block = new TimeSeriesStore.Block(roundTime, roundKeys, players, values);
+        roundPlayers = null;
+        roundValues = null;
+        roundCaptured = null;
+        return block;
+    }
+
+    private void write(TimeSeriesStore.Block block) {
+        try {
+            store.append(block);
+            LocalDate today = LocalDate.now();
+            if (!today.equals(lastRetention)) {
+                lastRetention = today;
+                PluginSettings settings = plugin.getSettings();
+                store.applyRetention(settings.getSamplingFullResolutionDays(), settings.getSamplingKeepDays());
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not write stat samples: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Shows how the player's stat changed since {@code since}: the overall change and rate, then up to
+     * {@link #TREND_POINTS} evenly spaced samples.
+     */
+    public void showTrend(CommandSender sender, OfflinePlayer target, String statArg, long since) {
+        String key = statArg.toUpperCase();
+        if (!plugin.getSettings().getSamplingStats().contains(key)) {
+            sender.sendMessage(lang.getPrefixedMessage("trend-not-sampled", "stat", statArg));
+            return;
+        }
+        String name = target.getName() != null ? target.getName() : target.getUniqueId().toString();
+        long now = System.currentTimeMillis();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<long[]> points;
+            try {
+                points = store.read(target.getUniqueId(), key, since, now);
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not read stat samples: " + e.getMessage());
+                points = new ArrayList<>();
+            }
+            List<long[]> samples = points;
+            Bukkit.getScheduler().runTask(plugin, () -> printTrend(sender, name, statArg, samples));
+        });
+    }
+
+    private void printTrend(CommandSender sender, String name, String statArg, List<long[]> points) {
+        if (points.size() < 2) {
+            sender.sendMessage(lang.getPrefixedMessage("trend-empty", "player", name, "stat", statArg));
+            return;
+        }
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+        long[] first = points.get(0);
+        long[] last = points.get(points.size() - 1);
+        double hours = (last[0] - first[0]) / 3_600_000.0;
+        sender.sendMessage(lang.getPrefixedMessage("trend-header",
+                "player", name,
+                "stat", statArg,
+                "from", format.format(Instant.ofEpochMilli(first[0])),
+                "to", format.format(Instant.ofEpochMilli(last[0])),
+                "change", String.valueOf(last[1] - first[1]),
+                "rate", String.format(Locale.ROOT, "%.1f", hours > 0 ? (last[1] - first[1]) / hours : 0)));
+
+        long step = Math.max(1, (last[0] - first[0]) / TREND_POINTS);
+        long previous = first[1];
+        int next = 0;
+        for (int bucket = 1; bucket <= TREND_POINTS; bucket++) {
+            long end = bucket == TREND_POINTS ? last[0] : first[0] + bucket * step;
+            long[] point = null;
+            while (next < points.size() && points.get(next)[0] <= end) point = points.get(next++);
+            if (point == null) continue;
+            sender.sendMessage(lang.getMessage("trend-entry",
+                    "time", format.format(Instant.ofEpochMilli(point[0])),
+                    "value", String.valueOf(point[1]),
+                    "change", (point[1] >= previous ? "+" : "") + (point[1] - previous)));
+            previous = point[1];
+        }
+    }
+
+    public void shutdown() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+        if (captureTask != null) {
+            captureTask.cancel();
+            captureTask = null;
+        }
+        store.close();
+    }
+}
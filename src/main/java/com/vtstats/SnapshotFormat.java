@@ -0,0 +1,117 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Layout of a {@code .vtsnap} backup:
+ * <pre>
+ * header   "VTSN" | version:u8 | compression:u8 | keyCount:varint | (len:varint utf8)*
+ * records  (length:varint payload)*            payload compressed per record
+ * footer   count:i32 | (uuidMsb:i64 uuidLsb:i64 offset:i64 payloadCrc:i32)*   sorted by UUID
+ * trailer  footerOffset:i64 | fileCrc:i32 | "VTSE"      fileCrc covers every byte before it
+ * </pre>
+ * An uncompressed payload is {@code entries:varint (keyDelta:varint value:zigzag)*} with keys ascending.
+ * Version 1 files have no checksums: 24-byte index entries and a 12-byte trailer.
+ */
+public final class SnapshotFormat {
+
+    public static final String EXTENSION = ".vtsnap";
+    public static final byte[] HEADER_MAGIC = {'V', 'T', 'S', 'N'};
+    public static final byte[] TRAILER_MAGIC = {'V', 'T', 'S', 'E'};
+    public static final int VERSION = 2;
+    public static final int INDEX_ENTRY_SIZE = 28;
+    public static final int TRAILER_SIZE = 16;
+    public static final int INDEX_ENTRY_SIZE_V1 = 24;
+    public static final int TRAILER_SIZE_V1 = 12;
+
+    public static final int COMPRESSION_NONE = 0;
+    public static final int COMPRESSION_DEFLATE = 1;
+    public static final int COMPRESSION_GZIP = 2;
+
+    private SnapshotFormat() {}
+
+    public static int parseCompression(String name) {
+        switch (name == null ? "" : name.toLowerCase(Locale.ROOT)) {
+            case "none":
+                return COMPRESSION_NONE;
+            case "gzip":
+                return COMPRESSION_GZIP;
+            default:
+                return COMPRESSION_DEFLATE;
+        }
+    }
+
+    public static byte[] encodeRecord(StatVector stats, int compression) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(16 + stats.size() * 3);
+        try (OutputStream out = compress(raw, compression)) {
+            VarInts.writeUnsigned(out, stats.size());
+            int previous = -1;
+            for (int i = 0; i < stats.size(); i++) {
+                VarInts.writeUnsigned(out, stats.keyAt(i) - previous);
+                VarInts.writeSigned(out, stats.valueAt(i));
+                previous = stats.keyAt(i);
+            }
+        }
+        return raw.toByteArray();
+    }
+
+    /**
+     * Decodes a record written by {@link #encodeRecord}.
+     *
+     * @param keyMapping translates snapshot key ids into catalog indices; -1 drops the entry
+     */
+    public static void decodeRecord(byte[] data, int offset, int length, int compression, int[] keyMapping, StatEntryConsumer consumer) throws IOException {
+        try (InputStream in = decompress(new ByteArrayInputStream(data, offset, length), compression)) {
+            int count = (int) VarInts.readUnsigned(in);
+            int key = -1;
+            for (int i = 0; i < count; i++) {
+                key += (int) VarInts.readUnsigned(in);
+                int value = (int) VarInts.readSigned(in);
+                if (key < keyMapping.length && keyMapping[key] >= 0) {
+                    consumer.accept(keyMapping[key], value);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the uncompressed payload of a record written by {@link #encodeRecord}
+     */
+    public static byte[] inflate(byte[] data, int offset, int length, int compression) throws IOException {
+        try (InputStream in = decompress(new ByteArrayInputStream(data, offset, length), compression)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static OutputStream compress(OutputStream out, int compression) throws IOException {
+        if (compression == COMPRESSION_DEFLATE) return new DeflaterOutputStream(out);
+        if (compression == COMPRESSION_GZIP) return new GZIPOutputStream(out);
+        return out;
+    }
+
+    private static InputStream decompress(InputStream in, int compression) throws IOException {
+        if (compression == COMPRESSION_DEFLATE) return new InflaterInputStream(in);
+        if (compression == COMPRESSION_GZIP) return new GZIPInputStream(in);
+        return in;
+    }
+
+    public interface StatEntryConsumer {
+        void accept(int index, int value);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * Random-access reader for {@code .vtsnap} files. The header is parsed up front, while the footer index is
+ * searched in place with positional reads, so finding and reading one player reads only a few index entries
+ * and that player's record.
+ */
+public class SnapshotReader implements BackupReader {
+
+    private final File file;
+    private final PositionalFile data;
+    private final int version;
+    private final int entrySize;
+    private final int compression;
+    private final int[] keyMapping;
+    private final int count;
+    private final long indexOffset;
+
+    public SnapshotReader(File file, StatCatalog catalog) throws IOException {
+        this.file = file;
+        this.data = new PositionalFile(file);
+        try {
+            long size = data.size();
+            byte[] magic = new byte[4];
+            try (DataInputStream header = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                header.readFully(magic);
+                if (!Arrays.equals(magic, SnapshotFormat.HEADER_MAGIC)) throw new IOException("Not a snapshot file: " + file.getName());
+                this.version = header.readUnsignedByte();
+                if (version != 1 && version != SnapshotFormat.VERSION) throw new IOException("Unsupported snapshot version " + version + ": " + file.getName());
+                this.compression = header.readUnsignedByte();
+                int keyCount = (int) VarInts.readUnsigned(header);
+                this.keyMapping = new int[keyCount];
+                for (int i = 0; i < keyCount; i++) {
+                    byte[] key = new byte[(int) VarInts.readUnsigned(header)];
+                    header.readFully(key);
+                    keyMapping[i] = catalog.indexOf(new String(key, StandardCharsets.UTF_8));
+                }
+            }
+
+            this.entrySize = version == 1 ? SnapshotFormat.INDEX_ENTRY_SIZE_V1 : SnapshotFormat.INDEX_ENTRY_SIZE;
+            int trailerSize = version == 1 ? SnapshotFormat.TRAILER_SIZE_V1 : SnapshotFormat.TRAILER_SIZE;
+            if (size < 6 + trailerSize) throw new IOException("Snapshot too small: " + file.getName());
+            ByteBuffer trailer = data.read(size - trailerSize, trailerSize);
+            long footerOffset = trailer.getLong();
+            trailer.position(trailerSize - 4);
+            trailer.get(magic);
+            if (!Arrays.equals(magic, SnapshotFormat.TRAILER_MAGIC)) throw new IOException("Missing snapshot trailer: " + file.getName());
+
+            this.count = data.getInt(footerOffset);
+            this.indexOffset = footerOffset + 4;
+            if (count < 0 || indexOffset + (long) count * entrySize > size) {
+                throw new IOException("Corrupt snapshot index: " + file.getName());
+            }
+        } catch (IOException | RuntimeException e) {
+            data.close();
+            if (e instanceof IOException) throw (IOException) e;
+            throw new IOException("Corrupt snapshot " + file.getName(), e);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public int getPlayerCount() {
+        return count;
+    }
+
+    @Override
+    public UUID getPlayer(int i) {
+        try {
+            long entry = indexOffset + (long) i * entrySize;
+            return new UUID(data.getLong(entry), data.getLong(entry + 8));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int find(UUID uuid) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = getPlayer(mid).compareTo(uuid);
+            if (cmp < 0) low = mid + 1;
+            else if (cmp > 0) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    @Override
+    public void read(int i, SnapshotFormat.StatEntryConsumer consumer) throws IOException {
+        byte[] record = readRecord(i);
+        SnapshotFormat.decodeRecord(record, 0, record.length, compression, keyMapping, consumer);
+    }
+
+    private byte[] readRecord(int i) throws IOException {
+        long entry = indexOffset + (long) i * entrySize;
+        long offset = data.getLong(entry + 16);
+        ByteBuffer lengthBuffer = data.read(offset, (int) Math.min(10, data.size() - offset));
+        int length = (int) VarInts.readUnsigned(lengthBuffer);
+        byte[] record = data.read(offset + lengthBuffer.position(), length).array();
+        if (version > 1) {
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            if ((int) crc.getValue() != data.getInt(entry + 24)) throw new IOException("Damaged record for " + getPlayer(i) + " in " + file.getName());
+        }
+        return record;
+    }
+
+    /**
+     * One sequential checksum pass over the whole file; only if that fails are the records checked one by one
+     * to find the damaged players.
+     */
+    @Override
+    public List<UUID> verify() throws IOException {
+        if (version > 1) {
+            CRC32 crc = new CRC32();
+            data.update(crc, 0, data.size() - 8);
+            if ((int) crc.getValue() == data.getInt(data.size() - 8)) return Collections.emptyList();
+        }
+        List<UUID> damaged = IntStream.range(0, count).parallel()
+                .filter(i -> !isReadable(i))
+                .mapToObj(this::getPlayer)
+                .collect(Collectors.toCollection(ArrayList::new));
+        if (version > 1 && damaged.isEmpty()) throw new IOException("Damaged header or index in " + file.getName());
+        return damaged;
+    }
+
+    private boolean isReadable(int i) {
+        try {
+            read(i, (index, value) -> {});
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        data.close();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Streams player records into a single {@code .vtsnap} file, see {@link SnapshotFormat}.
+ * The file only appears under its final name once {@link #close()} has written the footer.
+ */
+public class SnapshotWriter implements BackupWriter {
+
+    private final File target;
+    private final File tmpFile;
+    private final DataOutputStream out;
+    private final int compression;
+    private final CRC32 fileCrc = new CRC32();
+    private final CRC32 recordCrc = new CRC32();
+    private final List<IndexEntry> index = new ArrayList<>();
+    private long position;
+    private boolean closed;
+
+    public SnapshotWriter(File target, StatCatalog catalog, int compression) throws IOException {
+        this.target = target;
+        this.tmpFile = new File(target.getParentFile(), target.getName() + ".tmp");
+        this.compression = compression;
+        this.out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(new FileOutputStream(tmpFile), fileCrc), 1 << 16));
+
+        try {
+            out.write(SnapshotFormat.HEADER_MAGIC);
+            out.writeByte(SnapshotFormat.VERSION);
+            out.writeByte(compression);
+            VarInts.writeUnsigned(out, catalog.size());
+            for (int i = 0; i < catalog.size(); i++) {
+                byte[] key = catalog.getKey(i).getBytes(StandardCharsets.UTF_8);
+                VarInts.writeUnsigned(out, key.length);
+                out.write(key);
+            }
+        } catch (IOException | RuntimeException e) {
+            abort();
+            throw e;
+        }
+        position = out.size();
+    }
+
+    public int getCompression() {
+        return compression;
+    }
+
+    @Override
+    public byte[] encode(UUID uuid, StatVector stats) throws IOException {
+        return SnapshotFormat.encodeRecord(stats, compression);
+    }
+
+    @Override
+    public void append(UUID uuid, byte[] record) throws IOException {
+        recordCrc.reset();
+        recordCrc.update(record);
+        index.add(new IndexEntry(uuid, position, (int) recordCrc.getValue()));
+        VarInts.writeUnsigned(out, record.length);
+        out.write(record);
+        position += VarInts.sizeOfUnsigned(record.length) + record.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        long footerOffset = position;
+        index.sort(Comparator.comparing(e -> e.uuid));
+        out.writeInt(index.size());
+        for (IndexEntry entry : index) {
+            out.writeLong(entry.uuid.getMostSignificantBits());
+            out.writeLong(entry.uuid.getLeastSignificantBits());
+            out.writeLong(entry.offset);
+            out.writeInt(entry.crc);
+        }
+        out.writeLong(footerOffset);
+        out.flush();
+        out.writeInt((int) fileCrc.getValue());
+        out.write(SnapshotFormat.TRAILER_MAGIC);
+        out.close();
+        Files.move(tmpFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void abort() {
+        closed = true;
+        try {
+            out.close();
+        } catch (IOException ignored) {}
+        tmpFile.delete();
+    }
+
+    private static class IndexEntry {
+        private final UUID uuid;
+        private final long offset;
+        private final int crc;
+
+        IndexEntry(UUID uuid, long offset, int crc) {
+            this.uuid = uuid;
+            this.offset = offset;
+            this.crc = crc;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.Material;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.Statistic;
+import org.bukkit.entity.EntityType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dense, integer-indexed table of every valid (Statistic, qualifier) pair.
+ * Built once on enable so bulk jobs never re-filter the Material and EntityType enums.
+ * Entries of the same statistic are contiguous, see {@link #firstIndexOf} and {@link #endIndexOf}.
+ */
+public class StatCatalog {
+
+    public static final Statistic.Type SIMPLE_STAT_TYPE;
+
+    static {
+        Statistic.Type tempType;
+        try {
+            tempType = Statistic.Type.valueOf("UNTIMED");
+        } catch (IllegalArgumentException e) {
+            tempType = Statistic.Type.valueOf("UNTYPED");
+        }
+        SIMPLE_STAT_TYPE = tempType;
+    }
+
+    private final Statistic[] statistics;
+    private final Material[] materials;
+    private final EntityType[] entityTypes;
+    private final String[] keys;
+    private final int[] firstIndex;
+    private final int[] endIndex;
+    private final Map<String, Integer> keyIndex;
+
+    public StatCatalog() {
+        List<Material> blocks = new ArrayList<>();
+        List<Material> items = new ArrayList<>();
+        for (Material m : Material.values()) {
+            if (m.isLegacy()) continue;
+            if (m.isBlock()) blocks.add(m);
+            if (m.isItem()) items.add(m);
+        }
+        List<EntityType> livingEntities = new ArrayList<>();
+        for (EntityType et : EntityType.values()) {
+            if (et.isAlive()) livingEntities.add(et);
+        }
+
+        Statistic[] allStats = Statistic.values();
+        int size = 0;
+        for (Statistic s : allStats) {
+            size += qualifierCount(s.getType(), blocks.size(), items.size(), livingEntities.size());
+        }
+
+        this.statistics = new Statistic[size];
+        this.materials = new Material[size];
+        this.entityTypes = new EntityType[size];
+        this.keys = new String[size];
+        this.firstIndex = new int[allStats.length];
+        this.endIndex = new int[allStats.length];
+        this.keyIndex = new HashMap<>(size * 2);
+
+        int i = 0;
+        for (Statistic s : allStats) {
+            firstIndex[s.ordinal()] = i;
+            Statistic.Type type = s.getType();
+            if (type == SIMPLE_STAT_TYPE) {
+                i = add(i, s, null, null, s.name());
+            } else if (type == Statistic.Type.BLOCK || type == Statistic.Type.ITEM) {
+                for (Material m : type == Statistic.Type.BLOCK ? blocks : items) {
+                    i = add(i, s, m, null, s.name() + ":" + m.name());
+                }
+            } else if (type == Statistic.Type.ENTITY) {
+                for (EntityType et : livingEntities) {
+                    i = add(i, s, null, et, s.name() + ":" + et.name());
+                }
+            }
+            endIndex[s.ordinal()] = i;
+        }
+    }
+
+    private static int qualifierCount(Statistic.Type type, int blocks, int items, int entities) {
+        if (type == SIMPLE_STAT_TYPE) return 1;
+        if (type == Statistic.Type.BLOCK) return blocks;
+        if (type == Statistic.Type.ITEM) return items;
+        if (type == Statistic.Type.ENTITY) return entities;
+        return 0;
+    }
+
+    private int add(int i, Statistic s, Material m, EntityType et, String key) {
+        statistics[i] = s;
+        materials[i] = m;
+        entityTypes[i] = et;
+        keys[i] = key;
+        keyIndex.put(key, i);
+        return i + 1;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public Statistic getStatistic(int index) {
+        return statistics[index];
+    }
+
+    public Material getMaterial(int index) {
+        return materials[index];
+    }
+
+    public EntityType getEntityType(int index) {
+        return entityTypes[index];
+    }
+
+    /**
+     * @return the key in command form, e.g. {@code DEATHS} or {@code MINE_BLOCK:DIAMOND_ORE}
+     */
+    public String getKey(int index) {
+        return keys[index];
+    }
+
+    public String getQualifier(int index) {
+        if (materials[index] != null) return materials[index].name();
+        if (entityTypes[index] != null) return entityTypes[index].name();
+        return null;
+    }
+
+    public int firstIndexOf(Statistic stat) {
+        return firstIndex[stat.ordinal()];
+    }
+
+    public int endIndexOf(Statistic stat) {
+        return endIndex[stat.ordinal()];
+    }
+
+    /**
+     * @param key a key in command form; case-sensitive, upper case enum names
+     * @return the catalog index, or -1 if the pair is not valid
+     */
+    public int indexOf(String key) {
+        Integer index = keyIndex.get(key);
+        return index != null ? index : -1;
+    }
+
+    public int indexOf(Statistic stat, String qualifier) {
+        return indexOf(qualifier == null ? stat.name() : stat.name() + ":" + qualifier);
+    }
+
+    public int getValue(OfflinePlayer p, int index) {
+        if (materials[index] != null) return p.getStatistic(statistics[index], materials[index]);
+        if (entityTypes[index] != null) return p.getStatistic(statistics[index], entityTypes[index]);
+        return p.getStatistic(statistics[index]);
+    }
+
+    public void setValue(OfflinePlayer p, int index, int value) {
+        if (materials[index] != null) p.setStatistic(statistics[index], materials[index], value);
+        else if (entityTypes[index] != null) p.setStatistic(statistics[index], entityTypes[index], value);
+        else p.setStatistic(statistics[index], value);
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import java.util.UUID;
+
+/**
+ * One player's statistics, addressed by {@link StatCatalog} index.
+ * Obtained from {@link StatsFileManager#open} and written back with {@link StatsFileManager#save}.
+ * {@link #get} sees values set through the holder.
+ */
+public interface StatHolder {
+
+    UUID getUniqueId();
+
+    /**
+     * @return true if writes are applied to a live player on the main thread rather than to a file
+     */
+    default boolean isOnline() {
+        return false;
+    }
+
+    int get(int index);
+
+    void set(int index, int value);
+
+    /**
+     * @return a copy of every non-zero value; it may also include stats explicitly set to zero
+     */
+    StatVector toVector();
+}
@@ -0,0 +1,259 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.Statistic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A predicate over one player's stats, compiled once from an expression such as
+ * {@code deaths > 500 and play_one_minute < 72000}. Comparisons take a stat key or a number on either
+ * side; a typed stat without a qualifier, e.g. {@code mine_block}, stands for the sum of all its qualifiers.
+ * Comparisons combine with {@code and}, {@code or}, {@code not} (or {@code &&}, {@code ||}, {@code !})
+ * and parentheses. Values are read lazily, so {@code and}/{@code or} only read the stats they need.
+ */
+public final class StatQuery {
+
+    private final String expression;
+    private final Node root;
+
+    private StatQuery(String expression, Node root) {
+        this.expression = expression;
+        this.root = root;
+    }
+
+    /**
+     * @throws ParseException if the expression is malformed or names an unknown stat
+     */
+    public static StatQuery compile(String expression, StatCatalog catalog) {
+        Parser parser = new Parser(tokenize(expression), catalog);
+        Node root = parser.parseOr();
+        if (parser.position < parser.tokens.size()) {
+            throw new ParseException(parser.tokens.get(parser.position), false);
+        }
+        return new StatQuery(expression.trim(), root);
+    }
+
+    /**
+     * Compiles a single stat key into an operand, for sorting query results.
+     *
+     * @throws ParseException if the key is unknown
+     */
+    public static Operand compileStat(String key, StatCatalog catalog) {
+        Operand operand = statOperand(key, catalog);
+        if (operand == null) throw new ParseException(key, true);
+        return operand;
+    }
+
+    public boolean test(StatHolder holder) {
+        return root.test(holder);
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * A numeric term of a comparison.
+     */
+    public interface Operand {
+        long get(StatHolder holder);
+    }
+
+    private interface Node {
+        boolean test(StatHolder holder);
+    }
+
+    private static Operand statOperand(String token, StatCatalog catalog) {
+        String key = token.toUpperCase();
+        int index = catalog.indexOf(key);
+        if (index >= 0) return holder -> holder.get(index);
+        if (key.indexOf(':') >= 0) return null;
+        Statistic stat;
+        try {
+            stat = Statistic.valueOf(key);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        int first = catalog.firstIndexOf(stat);
+        int end = catalog.endIndexOf(stat);
+        if (first == end) return null;
+        return holder -> {
+            long sum = 0;
+            for (int i = first; i < end; i++) sum += holder.get(i);
+            return sum;
+        };
+    }
+
+    private static List<String> tokenize(String expression) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        int length = expression.length();
+        while (i < length) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else if (c == '>' || c == '<' || c == '=' || c == '!') {
+                boolean twoChars = i + 1 < length && expression.charAt(i + 1) == '=';
+                tokens.add(expression.substring(i, twoChars ? i + 2 : i + 1));
+                i += twoChars ? 2 : 1;
+            } else if ((c == '&' || c == '|') && i + 1 < length && expression.charAt(i + 1) == c) {
+                tokens.add(expression.substring(i, i + 2));
+                i += 2;
+            } else if (isWordChar(c) || (c == '-' && i + 1 < length && Character.isDigit(expression.charAt(i + 1)))) {
+                int start = i++;
+                while (i < length && isWordChar(expression.charAt(i))) i++;
+                tokens.add(expression.substring(start, i));
+            } else {
+                throw new ParseException(String.valueOf(c), false);
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == ':';
+    }
+
+    /**
+     * Recursive descent over the tokens; {@code not} binds tighter than {@code and}, which binds tighter than {@code or}.
+     */
+    private static final class Parser {
+        private final List<String> tokens;
+        private final StatCatalog catalog;
+        private int position;
+
+        private Parser(List<String> tokens, StatCatalog catalog) {
+            this.tokens = tokens;
+            this.catalog = catalog;
+        }
+
+        private Node parseOr() {
+            Node left = parseAnd();
+            while (accept("or", "||")) {
+                Node a = left;
+                Node b = parseAnd();
+                left = holder -> a.test(holder) || b.test(holder);
+            }
+            return left;
+        }
+
+        private Node parseAnd() {
+            Node left = parseNot();
+            while (accept("and", "&&")) {
+                Node a = left;
+                Node b = parseNot();
+                left = holder -> a.test(holder) && b.test(holder);
+            }
+            return left;
+        }
+
+        private Node parseNot() {
+            if (accept("not", "!")) {
+                Node inner = parseNot();
+                return holder -> !inner.test(holder);
+            }
+            if (accept("(", "(")) {
+                Node inner = parseOr();
+                expect(")");
+                return inner;
+            }
+            return parseComparison();
+        }
+
+        private Node parseComparison() {
+            Operand left = parseOperand();
+            String op = next();
+            Operand right = parseOperand();
+            switch (op) {
+                case ">": return holder -> left.get(holder) > right.get(holder);
+                case ">=": return holder -> left.get(holder) >= right.get(holder);
+                case "<": return holder -> left.get(holder) < right.get(holder);
+                case "<=": return holder -> left.get(holder) <= right.get(holder);
+                case "=":
+                case "==": return holder -> left.get(holder) == right.get(holder);
+                case "!=": return holder -> left.get(holder) != right.get(holder);
+                default: throw new ParseException(op, false);
+            }
+        }
+
+        private Operand parseOperand() {
+            String token = next();
+            char first = token.charAt(0);
+            if (Character.isDigit(first) || first == '-') {
+                try {
+                    long value = Long.parseLong(token);
+                    return holder -> value;
+                } catch (NumberFormatException e) {
+                    throw new ParseException(token, false);
+                }
+            }
+            if (!isWordChar(first)) throw new ParseException(token, false);
+            Operand operand = statOperand(token, catalog);
+            if (operand == null) throw new ParseException(token, true);
+            return operand;
+        }
+
+        private boolean accept(String word, String symbol) {
+            if (position >= tokens.size()) return false;
+            String token = tokens.get(position);
+            if (token.equalsIgnoreCase(word) || token.equals(symbol)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String token) {
+            if (position >= tokens.size() || !tokens.get(position).equals(token)) {
+                throw new ParseException(position < tokens.size() ? tokens.get(position) : token, false);
+            }
+            position++;
+        }
+
+        private String next() {
+            if (position >= tokens.size()) throw new ParseException("", false);
+            return tokens.get(position++);
+        }
+    }
+
+    /**
+     * Thrown when an expression cannot be compiled; carries the offending token so it can be shown to the sender.
+     */
+    public static final class ParseException extends IllegalArgumentException {
+        private final String token;
+        private final boolean unknownStat;
+
+        ParseException(String token, boolean unknownStat) {
+            super((unknownStat ? "Unknown stat " : "Unexpected token ") + "'" + token + "'");
+            this.token = token;
+            this.unknownStat = unknownStat;
+        }
+
+        /**
+         * @return the token at which compiling failed, empty if the expression ended too early
+         */
+        public String getToken() {
+            return token;
+        }
+
+        public boolean isUnknownStat() {
+            return unknownStat;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+/**
+ * Count, exact sum, min, max and a {@link QuantileSketch} of one stat over a set of players.
+ * Summaries of disjoint sets of players merge into the summary of their union.
+ */
+public final class StatSummary {
+
+    private final QuantileSketch sketch = new QuantileSketch();
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+    private long computedAt;
+
+    public void add(long value) {
+        count++;
+        sum += value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+        sketch.add(value);
+    }
+
+    public StatSummary merge(StatSummary other) {
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sketch.merge(other.sketch);
+        return this;
+    }
+
+    void setComputedAt(long computedAt) {
+        this.computedAt = computedAt;
+    }
+
+    /**
+     * @return when the scan behind this summary finished, in epoch milliseconds
+     */
+    public long getComputedAt() {
+        return computedAt;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    /**
+     * @return the approximate value at quantile {@code q}, within {@link QuantileSketch#RELATIVE_ACCURACY}
+     */
+    public long getQuantile(double q) {
+        if (count == 0) return 0;
+        return Math.max(min, Math.min(max, sketch.quantile(q)));
+    }
+}
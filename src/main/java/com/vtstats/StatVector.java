@@ -0,0 +1,116 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import java.util.Arrays;
+
+/**
+ * A sparse map from {@link StatCatalog} index to value, kept as two parallel int arrays sorted by index.
+ * Indices without an entry read as zero. A player usually has a few hundred entries out of a catalog of
+ * several thousand, so this is what bulk jobs pass around instead of a dense array or a YAML tree.
+ * Not thread-safe.
+ */
+public final class StatVector {
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    public StatVector() {
+        this(16);
+    }
+
+    public StatVector(int capacity) {
+        this.keys = new int[Math.max(capacity, 4)];
+        this.values = new int[keys.length];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the catalog index of the {@code i}-th entry; entries are in ascending index order
+     */
+    public int keyAt(int i) {
+        return keys[i];
+    }
+
+    public int valueAt(int i) {
+        return values[i];
+    }
+
+    public boolean containsKey(int index) {
+        return Arrays.binarySearch(keys, 0, size, index) >= 0;
+    }
+
+    public int get(int index) {
+        int i = Arrays.binarySearch(keys, 0, size, index);
+        return i >= 0 ? values[i] : 0;
+    }
+
+    /**
+     * Stores the value, including zero, so callers can tell an explicit zero from a missing entry.
+     */
+    public void set(int index, int value) {
+        if (size == 0 || index > keys[size - 1]) {
+            append(index, value);
+            return;
+        }
+        int i = Arrays.binarySearch(keys, 0, size, index);
+        if (i >= 0) {
+            values[i] = value;
+            return;
+        }
+        i = -i - 1;
+        grow();
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(values, i, values, i + 1, size - i);
+        keys[i] = index;
+        values[i] = value;
+        size++;
+    }
+
+    /**
+     * Adds an entry after the last one; {@code index} must be greater than every index already present.
+     */
+    public void append(int index, int value) {
+        if (size > 0 && index <= keys[size - 1]) throw new IllegalArgumentException("Index " + index + " is out of order");
+        grow();
+        keys[size] = index;
+        values[size++] = value;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void forEach(SnapshotFormat.StatEntryConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(keys[i], values[i]);
+        }
+    }
+
+    public StatVector copy() {
+        StatVector copy = new StatVector(size);
+        System.arraycopy(keys, 0, copy.keys, 0, size);
+        System.arraycopy(values, 0, copy.values, 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    private void grow() {
+        if (size < keys.length) return;
+        keys = Arrays.copyOf(keys, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+    }
+}
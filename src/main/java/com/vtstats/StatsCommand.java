@@ -12,44 +12,123 @@ import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
-import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
 import org.bukkit.util.StringUtil;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
 
 public class StatsCommand implements CommandExecutor, TabCompleter {
 
+    private static final int HISTORY_LIMIT = 10;
+    private static final int TOP_DEFAULT = 10;
+    private static final int TOP_MAX = 100;
+    private static final DateTimeFormatter BACKUP_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+    private static final int MAX_SUGGESTIONS = 100;
+    private static final Map<String, String> SUBCOMMANDS = new HashMap<>();
+    private static final Map<String, String> PLAYER_ACTIONS = new HashMap<>();
+
+    static {
+        SUBCOMMANDS.put("reload", "vtstats.reload");
+        SUBCOMMANDS.put("backup", "vtstats.backup");
+        SUBCOMMANDS.put("loadbackup", "vtstats.loadbackup");
+        SUBCOMMANDS.put("restore", "vtstats.restore");
+        SUBCOMMANDS.put("verifybackup", "vtstats.verifybackup");
+        SUBCOMMANDS.put("reset", "vtstats.reset.all");
+        SUBCOMMANDS.put("top", "vtstats.top");
+        SUBCOMMANDS.put("history", "vtstats.history");
+        SUBCOMMANDS.put("undo", "vtstats.undo");
+        SUBCOMMANDS.put("apply", "vtstats.apply");
+        SUBCOMMANDS.put("query", "vtstats.query");
+        SUBCOMMANDS.put("aggregate", "vtstats.aggregate");
+        SUBCOMMANDS.put("trend", "vtstats.trend");
+        SUBCOMMANDS.put("diff", "vtstats.diff");
+        SUBCOMMANDS.put("perf", "vtstats.perf");
+        SUBCOMMANDS.put("jobs", "vtstats.jobs");
+        SUBCOMMANDS.put("cancel", "vtstats.jobs");
+        SUBCOMMANDS.put("confirm", null);
+        PLAYER_ACTIONS.put("check", "vtstats.check");
+        PLAYER_ACTIONS.put("set", "vtstats.set");
+        PLAYER_ACTIONS.put("reset", "vtstats.reset");
+    }
+
     private final VtStats plugin;
     private final LangManager lang;
     private final LogManager logger;
     private final BackupManager backupManager;
-
-    private static final Statistic.Type SIMPLE_STAT_TYPE;
-
-    static {
-        Statistic.Type tempType;
-        try {
-            tempType = Statistic.Type.valueOf("UNTIMED");
-        } catch (IllegalArgumentException e) {
-            tempType = Statistic.Type.valueOf("UNTYPED");
-        }
-        SIMPLE_STAT_TYPE = tempType;
-    }
+    private final StatCatalog catalog;
+    private final ResetManager resetManager;
+    private final JobManager jobManager;
+    private final LeaderboardManager leaderboards;
+    private final StatsFileManager statsFiles;
+    private final ApplyManager applyManager;
+    private final QueryManager queryManager;
+    private final AggregateManager aggregates;
+    private final SamplingManager sampling;
+    private final DiffManager diffs;
+    private final MetricsManager metrics;
+    private final PrefixIndex subcommandIndex = new PrefixIndex(SUBCOMMANDS.keySet());
+    private final PrefixIndex playerActionIndex = new PrefixIndex(PLAYER_ACTIONS.keySet());
+    private final PrefixIndex statNameIndex;
+    private final PrefixIndex statKeyIndex;
+    private final PlayerNameIndex playerNames = new PlayerNameIndex();
+    private final PlayerResolver players;
 
     public StatsCommand(VtStats plugin) {
         this.plugin = plugin;
         this.lang = plugin.getLangManager();
         this.logger = plugin.getLogManager();
         this.backupManager = plugin.getBackupManager();
+        this.catalog = plugin.getStatCatalog();
+        this.resetManager = plugin.getResetManager();
+        this.jobManager = plugin.getJobManager();
+        this.leaderboards = plugin.getLeaderboardManager();
+        this.statsFiles = plugin.getStatsFileManager();
+        this.applyManager = plugin.getApplyManager();
+        this.queryManager = plugin.getQueryManager();
+        this.aggregates = plugin.getAggregateManager();
+        this.sampling = plugin.getSamplingManager();
+        this.diffs = plugin.getDiffManager();
+        this.metrics = plugin.getMetricsManager();
+        this.players = plugin.getPlayerResolver();
+        List<String> statNames = new ArrayList<>();
+        for (Statistic stat : Statistic.values()) statNames.add(stat.name());
+        this.statNameIndex = new PrefixIndex(statNames);
+        List<String> statKeys = new ArrayList<>();
+        for (int i = 0; i < catalog.size(); i++) {
+            if (catalog.getQualifier(i) != null) statKeys.add(catalog.getKey(i));
+        }
+        this.statKeyIndex = new PrefixIndex(statKeys);
+        plugin.getServer().getPluginManager().registerEvents(playerNames, plugin);
     }
 
     @Override
     public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        long start = metrics.start();
+        try {
+            return dispatch(sender, args);
+        } finally {
+            metrics.record(MetricsManager.Metric.COMMAND, start);
+        }
+    }
+
+    private boolean dispatch(CommandSender sender, String[] args) {
         if (args.length == 0) {
             sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
             return true;
@@ -66,8 +145,34 @@ public class StatsCommand implements CommandExecutor, TabCompleter {
                 return handleBackup(sender);
             case "loadbackup":
                 return handleLoadBackup(sender, args);
+            case "verifybackup":
+                return handleVerifyBackup(sender, args);
+            case "restore":
+                return handleRestore(sender, args);
             case "reset":
                 return handleGlobalReset(sender, args);
+            case "jobs":
+                return handleJobs(sender);
+            case "cancel":
+                return handleCancel(sender, args);
+            case "top":
+                return handleTop(sender, args);
+            case "history":
+                return handleHistory(sender, args);
+            case "undo":
+                return handleUndo(sender, args);
+            case "apply":
+                return handleApply(sender, args);
+            case "query":
+                return handleQuery(sender, args);
+            case "aggregate":
+                return handleAggregate(sender, args);
+            case "trend":
+                return handleTrend(sender, args);
+            case "diff":
+                return handleDiff(sender, args);
+            case "perf":
+                return handlePerf(sender, args);
             default:
                 return handlePlayerCommands(sender, args);
         }
@@ -81,14 +186,336 @@ public class StatsCommand implements CommandExecutor, TabCompleter {
 
     private boolean handleLoadBackup(CommandSender sender, String[] args) {
         if (!sender.hasPermission("vtstats.loadbackup")) return noPerm(sender);
+        if (args.length < 2 || args.length > 4) {
+            sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
+            return true;
+        }
+        String statArg = args.length == 4 ? args[3] : null;
+        if (args.length == 2 || args[2].equalsIgnoreCase("all")) {
+            backupManager.loadBackup(sender, args[1], null, statArg);
+            return true;
+        }
+        players.resolve(args[2], target -> {
+            if (target == null) {
+                sender.sendMessage(lang.getPrefixedMessage("player-not-found", "player", args[2]));
+            } else {
+                backupManager.loadBackup(sender, args[1], target, statArg);
+            }
+        });
+        return true;
+    }
+
+    private boolean handleVerifyBackup(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("vtstats.verifybackup")) return noPerm(sender);
         if (args.length != 2) {
             sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
             return true;
         }
-        backupManager.loadBackup(sender, args[1]);
+        backupManager.verifyBackups(sender, args[1]);
+        return true;
+    }
+
+    private boolean handleRestore(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("vtstats.restore")) return noPerm(sender);
+        long until = args.length == 2 ? parseTime(args[1]) : -1;
+        if (until < 0 || until > System.currentTimeMillis()) {
+            sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
+            return true;
+        }
+        backupManager.restoreToTime(sender, until, args[1]);
+        return true;
+    }
+
+    private boolean handlePerf(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("vtstats.perf")) return noPerm(sender);
+        if (args.length > 2 || (args.length == 2 && !args[1].equalsIgnoreCase("reset"))) {
+            sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
+            return true;
+        }
+        if (args.length == 2) {
+            metrics.reset();
+            sender.sendMessage(lang.getPrefixedMessage("perf-reset"));
+            return true;
+        }
+        metrics.showPerf(sender, lang);
+        return true;
+    }
+
+    private boolean handleJobs(CommandSender sender) {
+        if (!sender.hasPermission("vtstats.jobs")) return noPerm(sender);
+        if (jobManager.getJobs().isEmpty()) {
+            sender.sendMessage(lang.getPrefixedMessage("jobs-empty"));
+            return true;
+        }
+        sender.sendMessage(lang.getPrefixedMessage("jobs-header"));
+        for (Job job : jobManager.getJobs()) {
+            int total = job.getTotal();
+            int done = job.getPosition();
+            long eta = job.getEtaMillis();
+            sender.sendMessage(lang.getMessage("jobs-entry",
+                    "id", String.valueOf(job.getId()),
+                    "type", job.getType(),
+                    "done", String.valueOf(done),
+                    "total", String.valueOf(total),
+                    "percent", total > 0 ? String.valueOf(done * 100L / total) : "0",
+                    "eta", eta < 0 ? "?" : (eta / 1000) + "s"));
+        }
+        return true;
+    }
+
+    private boolean handleCancel(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("vtstats.jobs")) return noPerm(sender);
+        if (args.length != 2) {
+            sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
+            return true;
+        }
+        int id;
+        try {
+            id = Integer.parseInt(args[1].replace("#", ""));
+        } catch (NumberFormatException e) {
+            id = -1;
+        }
+        if (jobManager.cancel(id)) {
+            sender.sendMessage(lang.getPrefixedMessage("job-cancel-requested", "id", String.valueOf(id)));
+        } else {
+            sender.sendMessage(lang.getPrefixedMessage("job-not-found", "id", args[1]));
+        }
+        return true;
+    }
+
+    private boolean handleTop(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("vtstats.top")) return noPerm(sender);
+        if (args.length < 2 || args.length > 3) {
+            sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
+            return true;
+        }
+        String statArg = args[1];
+        Leaderboard board = leaderboards.getLeaderboard(statArg);
+        if (board == null) {
+            sender.sendMessage(lang.getPrefixedMessage("top-not-tracked", "stat", statArg));
+            return true;
+        }
+        int count = TOP_DEFAULT;
+        if (args.length == 3) {
+            try {
+                count = Math.max(1, Math.min(TOP_MAX, Integer.parseInt(args[2])));
+            } catch (NumberFormatException e) {
+                sender.sendMessage(lang.getPrefixedMessage("value-not-a-number", "value", args[2]));
+                return true;
+            }
+        }
+        List<Leaderboard.Entry> top = board.getTop(count);
+        if (top.isEmpty()) {
+            sender.sendMessage(lang.getPrefixedMessage("top-empty", "stat", statArg));
+            return true;
+        }
+        sender.sendMessage(lang.getPrefixedMessage("top-header", "stat", statArg, "count", String.valueOf(top.size())));
+        int rank = 1;
+        for (Leaderboard.Entry entry : top) {
+            String name = players.getName(entry.getUniqueId());
+            sender.sendMessage(lang.getMessage("top-entry",
+                    "rank", String.valueOf(rank++),
+                    "player", name != null ? name : entry.getUniqueId().toString(),
+                    "value", String.valueOf(entry.getValue())));
+        }
+        return true;
+    }
+
+    private boolean handleHistory(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("vtstats.history")) return noPerm(sender);
+        AuditLog audit = logger.getAuditLog();
+        if (args.length < 2 || args.length > 3 || audit == null) {
+            sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
+            return true;
+        }
+        long since = 0;
+        if (args.length == 3) {
+            since = parseSince(args[2]);
+            if (since < 0) {
+                sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
+                return true;
+            }
+        }
+
+        String subject = args[1];
+        int[] statRange = statRange(subject);
+        if (statRange != null) {
+            showHistory(sender, audit, subject, null, statRange, since);
+            return true;
+        }
+        long finalSince = since;
+        players.resolve(subject, target -> {
+            if (target == null) {
+                sender.sendMessage(lang.getPrefixedMessage("player-not-found", "player", subject));
+            } else {
+                showHistory(sender, audit, subject, target.getUniqueId(), null, finalSince);
+            }
+        });
         return true;
     }
 
+    /**
+     * Lists the newest records about the player, or about the catalog range {@code statRange} if no player is given.
+     */
+    private void showHistory(CommandSender sender, AuditLog audit, String subject, UUID targetId, int[] statRange, long since) {
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<AuditLog.Record> records;
+            try {
+                long[] ids = targetId != null ? audit.findByTarget(targetId) : audit.findByStat(statRange[0], statRange[1]);
+                records = audit.readNewest(ids, since, HISTORY_LIMIT);
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not read the audit log: " + e.getMessage());
+                records = Collections.emptyList();
+            }
+            List<AuditLog.Record> found = records;
+            Bukkit.getScheduler().runTask(plugin, () -> printHistory(sender, subject, found));
+        });
+    }
+
+    private void printHistory(CommandSender sender, String subject, List<AuditLog.Record> records) {
+        if (records.isEmpty()) {
+            sender.sendMessage(lang.getPrefixedMessage("history-empty", "subject", subject));
+            return;
+        }
+        sender.sendMessage(lang.getPrefixedMessage("history-header", "subject", subject));
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+        for (AuditLog.Record record : records) {
+            sender.sendMessage(lang.getMessage("history-entry",
+                    "id", String.valueOf(record.getId()),
+                    "time", format.format(Instant.ofEpochMilli(record.getTime())),
+                    "actor", record.getActor(),
+                    "action", record.getAction(),
+                    "stat", record.getStat() != null ? record.getStat() : "-",
+                    "player", record.getTargetName(),
+                    "old", record.getOldValue() != null ? String.valueOf(record.getOldValue()) : "?",
+                    "new", record.getNewValue() != null ? String.valueOf(record.getNewValue()) : "?"));
+        }
+    }
+
+    private boolean handleUndo(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("vtstats.undo")) return noPerm(sender);
+        AuditLog audit = logger.getAuditLog();
+        long id;
+        try {
+            id = Long.parseLong(args.length == 2 ? args[1].replace("#", "") : "");
+        } catch (NumberFormatException e) {
+            id = -1;
+        }
+        if (id < 0 || audit == null) {
+            sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
+            return true;
+        }
+
+        long recordId = id;
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            AuditLog.Record record;
+            try {
+                record = audit.read(recordId);
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not read the audit log: " + e.getMessage());
+                record = null;
+            }
+            AuditLog.Record change = record;
+            Bukkit.getScheduler().runTask(plugin, () -> undo(sender, recordId, change));
+        });
+        return true;
+    }
+
+    private void undo(CommandSender sender, long recordId, AuditLog.Record record) {
+        if (record == null) {
+            sender.sendMessage(lang.getPrefixedMessage("undo-not-found", "id", String.valueOf(recordId)));
+            return;
+        }
+        if (record.getTarget() == null || record.getStat() == null || record.getOldValue() == null) {
+            sender.sendMessage(lang.getPrefixedMessage("undo-not-possible", "id", String.valueOf(recordId)));
+            return;
+        }
+        int index = catalog.indexOf(record.getStat().toUpperCase());
+        if (index < 0) {
+            sender.sendMessage(lang.getPrefixedMessage("stat-not-found", "stat", record.getStat()));
+            return;
+        }
+        if (isProtected(sender, index, record.getStat())) return;
+        OfflinePlayer target = Bukkit.getOfflinePlayer(record.getTarget());
+        int value = (int) (long) record.getOldValue();
+        // Only undo while the stat still holds what the action wrote, so later changes are never wiped out.
+        Integer expected = record.getNewValue() != null ? (int) (long) record.getNewValue() : null;
+        changeStat(sender, target, index, expected, value, "undo", (previous, changed) -> {
+            if (changed) {
+                sender.sendMessage(lang.getPrefixedMessage("undo-success",
+                        "id", String.valueOf(record.getId()),
+                        "player", String.valueOf(target.getName()),
+                        "stat", record.getStat(),
+                        "value", String.valueOf(value)));
+            } else {
+                sender.sendMessage(lang.getPrefixedMessage("undo-changed",
+                        "id", String.valueOf(record.getId()),
+                        "player", String.valueOf(target.getName()),
+                        "stat", record.getStat(),
+                        "value", String.valueOf(previous)));
+            }
+        });
+    }
+
+    /**
+     * @return the catalog index range {@code [from, to)} named by a stat argument, or null if it names no stat
+     */
+    private int[] statRange(String statArg) {
+        String key = statArg.toUpperCase();
+        if (key.contains(":")) {
+            int index = catalog.indexOf(key);
+            return index >= 0 ? new int[]{index, index + 1} : null;
+        }
+        try {
+            Statistic stat = Statistic.valueOf(key);
+            return new int[]{catalog.firstIndexOf(stat), catalog.endIndexOf(stat)};
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a point in time such as {@code 2025-01-31T18:30}, a backup name such as {@code 2025-01-31_18-30-00},
+     * or anything {@link #parseSince} accepts.
+     *
+     * @return the epoch millis it denotes, or -1 if it cannot be parsed
+     */
+    private static long parseTime(String arg) {
+        try {
+            return LocalDateTime.parse(arg).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ignored) {}
+        try {
+            return LocalDateTime.parse(arg, BACKUP_NAME_FORMAT).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ignored) {}
+        return parseSince(arg);
+    }
+
+    /**
+     * Parses a relative age such as {@code 30m}, {@code 12h}, {@code 7d} or {@code 2w}, or a date such as {@code 2025-01-31}.
+     *
+     * @return the epoch millis it denotes, or -1 if it cannot be parsed
+     */
+    private static long parseSince(String arg) {
+        try {
+            return LocalDate.parse(arg).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ignored) {}
+        if (arg.length() < 2) return -1;
+        long unit;
+        switch (Character.toLowerCase(arg.charAt(arg.length() - 1))) {
+            case 'm': unit = TimeUnit.MINUTES.toMillis(1); break;
+            case 'h': unit = TimeUnit.HOURS.toMillis(1); break;
+            case 'd': unit = TimeUnit.DAYS.toMillis(1); break;
+            case 'w': unit = TimeUnit.DAYS.toMillis(7); break;
+            default: return -1;
+        }
+        try {
+            long amount = Long.parseLong(arg.substring(0, arg.length() - 1));
+            return amount < 0 ? -1 : Math.max(0, System.currentTimeMillis() - amount * unit);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     private boolean handleReload(CommandSender sender) {
         if (!sender.hasPermission("vtstats.reload")) return noPerm(sender);
         plugin.reload();
@@ -111,29 +538,38 @@ public class StatsCommand implements CommandExecutor, TabCompleter {
              return true;
         }
         if (!sender.hasPermission("vtstats.reset.all")) return noPerm(sender);
-        if (args.length != 3 || !args[2].equalsIgnoreCase("all")) {
+        boolean targeted = args.length >= 4 && args[2].equalsIgnoreCase("where");
+        if (!targeted && (args.length != 3 || !args[2].equalsIgnoreCase("all"))) {
             sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
             return true;
         }
+        StatQuery query = null;
+        if (targeted) {
+            query = compileQuery(sender, String.join(" ", Arrays.copyOfRange(args, 3, args.length)));
+            if (query == null) return true;
+        }
 
         String statArg = args[1];
+        StatQuery target = query;
         Runnable resetTask = () -> {
-            if (statArg.equalsIgnoreCase("all")) {
-                runResetAllStatsForAllPlayersTask(sender);
+            if (target != null) {
+                resetManager.resetForMatchingPlayers(sender, statArg, target);
+            } else if (statArg.equalsIgnoreCase("all")) {
+                resetManager.resetAllStatsForAllPlayers(sender);
             } else {
-                runResetSingleStatForAllPlayersTask(sender, statArg);
+                resetManager.resetStatForAllPlayers(sender, statArg);
             }
         };
 
         Runnable taskWithBackup = () -> {
-            if (plugin.getConfig().getBoolean("backup.auto-backup-on-reset", true)) {
+            if (plugin.getSettings().isAutoBackupOnReset()) {
                 backupManager.createBackup(sender, resetTask);
             } else {
                 resetTask.run();
             }
         };
 
-        if (plugin.getConfig().getBoolean("confirmation.required", true)) {
+        if (plugin.getSettings().isConfirmationRequired()) {
             plugin.requestConfirmation((Player) sender, taskWithBackup);
         } else {
             taskWithBackup.run();
@@ -141,68 +577,73 @@ public class StatsCommand implements CommandExecutor, TabCompleter {
         return true;
     }
 
-    @SuppressWarnings("deprecation")
     private boolean handlePlayerCommands(CommandSender sender, String[] args) {
         if (args.length < 3) {
             sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
             return true;
         }
 
-        OfflinePlayer target = Bukkit.getOfflinePlayer(args[0]);
-        if (!target.hasPlayedBefore() && !target.isOnline()) {
-            sender.sendMessage(lang.getPrefixedMessage("player-not-found").replace("{player}", args[0]));
-            return true;
-        }
-
         String action = args[1].toLowerCase();
         String statArg = args[2];
-
-        switch (action) {
-            case "check":
-                return handleCheck(sender, target, statArg);
-            case "set":
-                if (args.length != 4) return false;
-                return handleSet(sender, target, statArg, args[3]);
-            case "reset":
-                return handleReset(sender, target, statArg);
-            default:
-                sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
-                return true;
+        if (!PLAYER_ACTIONS.containsKey(action)) {
+            sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
+            return true;
         }
+        if (action.equals("set") && args.length != 4) return false;
+
+        players.resolve(args[0], target -> {
+            if (target == null) {
+                sender.sendMessage(lang.getPrefixedMessage("player-not-found", "player", args[0]));
+                return;
+            }
+            switch (action) {
+                case "check":
+                    handleCheck(sender, target, statArg);
+                    break;
+                case "set":
+                    handleSet(sender, target, statArg, args[3]);
+                    break;
+                case "reset":
+                    handleReset(sender, target, statArg);
+                    break;
+            }
+        });
+        return true;
     }
 
     private boolean handleCheck(CommandSender sender, OfflinePlayer target, String statArg) {
         if (!sender.hasPermission("vtstats.check")) return noPerm(sender);
-        try {
-            long value = getStatValue(target, statArg);
-            sender.sendMessage(lang.getPrefixedMessage("check-stat")
-                    .replace("{player}", target.getName()).replace("{stat}", statArg).replace("{value}", String.valueOf(value)));
-        } catch (IllegalArgumentException e) {
-            sender.sendMessage(lang.getPrefixedMessage("stat-not-found").replace("{stat}", statArg));
+        int index = catalog.indexOf(statArg.toUpperCase());
+        if (index < 0) {
+            sender.sendMessage(lang.getPrefixedMessage("stat-not-found", "stat", statArg));
+            return true;
         }
+        readStat(sender, target, index, value -> sender.sendMessage(lang.getPrefixedMessage("check-stat",
+                "player", target.getName(),
+                "stat", statArg,
+                "value", String.valueOf(value))));
         return true;
     }
 
     private boolean handleSet(CommandSender sender, OfflinePlayer target, String statArg, String valueStr) {
         if (!sender.hasPermission("vtstats.set")) return noPerm(sender);
-        if (isProtected(sender, statArg)) return true;
+        int index = catalog.indexOf(statArg.toUpperCase());
+        if (index < 0) {
+            sender.sendMessage(lang.getPrefixedMessage("stat-not-found", "stat", statArg));
+            return true;
+        }
+        if (isProtected(sender, index, statArg)) return true;
 
         int value;
         try {
             value = Integer.parseInt(valueStr);
         } catch (NumberFormatException e) {
-            sender.sendMessage(lang.getPrefixedMessage("value-not-a-number").replace("{value}", valueStr));
+            sender.sendMessage(lang.getPrefixedMessage("value-not-a-number", "value", valueStr));
             return true;
         }
 
-        try {
-            setStatValue(target, statArg, value);
-            logger.logAction(sender, "set", statArg, target.getName(), valueStr);
-            sender.sendMessage(lang.getPrefixedMessage("set-success")
-                    .replace("{player}", target.getName()).replace("{stat}", statArg).replace("{value}", valueStr));
-        } catch (IllegalArgumentException e) {
-            sender.sendMessage(lang.getPrefixedMessage("stat-not-found").replace("{stat}", statArg));
-        }
+        changeStat(sender, target, index, null, value, "set", (previous, changed) ->
+                sender.sendMessage(lang.getPrefixedMessage("set-success", "player", target.getName(), "stat", statArg, "value", valueStr)));
         return true;
     }
 
@@ -211,29 +652,28 @@ public class StatsCommand implements CommandExecutor, TabCompleter {
         
         Runnable resetTask = () -> {
             if (statArg.equalsIgnoreCase("all")) {
-                runResetAllForPlayerTask(sender, target);
+                resetManager.resetAllForPlayer(sender, target);
             } else {
-                if (isProtected(sender, statArg)) return;
-                try {
-                    setStatValue(target, statArg, 0);
-                    logger.logAction(sender, "reset", statArg, target.getName(), null);
-                    sender.sendMessage(lang.getPrefixedMessage("reset-success")
-                            .replace("{player}", target.getName()).replace("{stat}", statArg));
-                } catch (IllegalArgumentException e) {
-                    sender.sendMessage(lang.getPrefixedMessage("stat-not-found").replace("{stat}", statArg));
+                int index = catalog.indexOf(statArg.toUpperCase());
+                if (index < 0) {
+                    sender.sendMessage(lang.getPrefixedMessage("stat-not-found", "stat", statArg));
+                    return;
                 }
+                if (isProtected(sender, index, statArg)) return;
+                changeStat(sender, target, index, null, 0, "reset", (previous, changed) ->
+                        sender.sendMessage(lang.getPrefixedMessage("reset-success", "player", target.getName(), "stat", statArg)));
             }
         };
 
         Runnable taskWithBackup = () -> {
-            if (plugin.getConfig().getBoolean("backup.auto-backup-on-reset", true)) {
+            if (plugin.getSettings().isAutoBackupOnReset()) {
                 backupManager.createBackup(sender, resetTask);
             } else {
                 resetTask.run();
             }
         };
 
-        if (statArg.equalsIgnoreCase("all") && plugin.getConfig().getBoolean("confirmation.required", true) && sender instanceof Player) {
+        if (statArg.equalsIgnoreCase("all") && plugin.getSettings().isConfirmationRequired() && sender instanceof Player) {
             plugin.requestConfirmation((Player) sender, taskWithBackup);
         } else {
             taskWithBackup.run();
@@ -241,11 +681,9 @@ public class StatsCommand implements CommandExecutor, TabCompleter {
         return true;
     }
 
-    private boolean isProtected(CommandSender sender, String statArg) {
-        List<String> protectedStats = plugin.getConfig().getStringList("protected-stats");
-        String baseStat = statArg.contains(":") ? statArg.split(":", 2)[0] : statArg;
-        if (protectedStats.stream().anyMatch(s -> s.equalsIgnoreCase(baseStat))) {
-            sender.sendMessage(lang.getPrefixedMessage("stat-is-protected").replace("{stat}", statArg));
+    private boolean isProtected(CommandSender sender, int index, String statArg) {
+        if (plugin.getSettings().isProtected(index)) {
+            sender.sendMessage(lang.getPrefixedMessage("stat-is-protected", "stat", statArg));
             return true;
         }
         return false;
@@ -256,146 +694,352 @@ public class StatsCommand implements CommandExecutor, TabCompleter {
         return true;
     }
 
-    private void setStatValue(OfflinePlayer p, String stat, int v) throws IllegalArgumentException {
-        if (stat.contains(":")) {
-            String[] parts = stat.split(":", 2);
-            Statistic s = Statistic.valueOf(parts[0].toUpperCase());
-            String q = parts[1].toUpperCase();
-            if (s.getType() == Statistic.Type.BLOCK || s.getType() == Statistic.Type.ITEM) {
-                p.setStatistic(s, Material.matchMaterial(q), v);
-            } else if (s.getType() == Statistic.Type.ENTITY) {
-                p.setStatistic(s, EntityType.valueOf(q), v);
+    /**
+     * Reads one stat and runs {@code callback} with it on the main thread. Offline players' files are read off
+     * the main thread.
+     */
+    private void readStat(CommandSender sender, OfflinePlayer target, int index, IntConsumer callback) {
+        Player online = target.getPlayer();
+        if (online != null) {
+            long start = metrics.start();
+            int value = catalog.getValue(online, index);
+            metrics.record(MetricsManager.Metric.STAT_GET_ONLINE, start);
+            callback.accept(value);
+            return;
+        }
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                int value = statsFiles.load(target.getUniqueId()).get(index);
+                Bukkit.getScheduler().runTask(plugin, () -> callback.accept(value));
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not read stats of " + target.getUniqueId() + ": " + e.getMessage());
+                Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage(lang.getPrefixedMessage("player-not-found",
+                        "player", String.valueOf(target.getName()))));
+            }
+        });
+    }
+
+    /**
+     * Changes one stat through the stats engine while holding the player's job lock, so it never interleaves with
+     * a job working on the same player. Offline players' files are read and written off the main thread.
+     *
+     * @param expected the value the stat must still have, or null to change it whatever it is
+     * @param done     run on the main thread with the value before the change and whether the change was made
+     */
+    private void changeStat(CommandSender sender, OfflinePlayer target, int index, Integer expected, int value, String action,
+                            BiConsumer<Integer, Boolean> done) {
+        UUID uuid = target.getUniqueId();
+        Object owner = new Object();
+        if (!jobManager.tryLockPlayer(owner, uuid)) {
+            sender.sendMessage(lang.getPrefixedMessage("player-busy", "player", String.valueOf(target.getName())));
+            return;
+        }
+        boolean online = target.isOnline();
+        Runnable change = () -> {
+            try {
+                StatHolder holder = statsFiles.open(target);
+                int previous = holder.get(index);
+                boolean changed = expected == null || expected == previous;
+                if (changed) {
+                    holder.set(index, value);
+                    statsFiles.save(holder);
+                    logger.logChange(sender, action, catalog.getKey(index), target, (long) previous, (long) value);
+                }
+                runOnMainThread(online, () -> done.accept(previous, changed));
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not change stats of " + uuid + ": " + e.getMessage());
+                runOnMainThread(online, () -> sender.sendMessage(lang.getPrefixedMessage("stat-change-failed",
+                        "player", String.valueOf(target.getName()))));
+            } finally {
+                jobManager.unlockPlayer(owner, uuid);
             }
+        };
+        if (online) {
+            change.run();
         } else {
-            Statistic s = Statistic.valueOf(stat.toUpperCase());
-            if (s.getType() != SIMPLE_STAT_TYPE) throw new IllegalArgumentException("Stat requires a qualifier");
-            p.setStatistic(s, v);
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, change);
         }
     }
 
-    private long getStatValue(OfflinePlayer p, String stat) throws IllegalArgumentException {
-        if (stat.contains(":")) {
-            String[] parts = stat.split(":", 2);
-            Statistic s = Statistic.valueOf(parts[0].toUpperCase());
-            String q = parts[1].toUpperCase();
-            if (s.getType() == Statistic.Type.BLOCK || s.getType() == Statistic.Type.ITEM) {
-                return p.getStatistic(s, Material.matchMaterial(q));
-            } else if (s.getType() == Statistic.Type.ENTITY) {
-                return p.getStatistic(s, EntityType.valueOf(q));
-            }
+    private void runOnMainThread(boolean onMainThread, Runnable task) {
+        if (onMainThread) {
+            task.run();
         } else {
-            Statistic s = Statistic.valueOf(stat.toUpperCase());
-            if (s.getType() != SIMPLE_STAT_TYPE) throw new IllegalArgumentException("Stat requires a qualifier");
-            return p.getStatistic(s);
+            Bukkit.getScheduler().runTask(plugin, task);
         }
-        return 0;
     }
 
-    private void runResetAllForPlayerTask(CommandSender sender, OfflinePlayer target) {
-        logger.logAction(sender, "reset all", "N/A", target.getName(), null);
-        sender.sendMessage(lang.getPrefixedMessage("reset-all-success").replace("{player}", target.getName()));
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            for (Statistic stat : Statistic.values()) {
-                if (!isProtected(sender, stat.name())) {
-                    resetStatForAllQualifiers(target, stat);
+    private boolean handleApply(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("vtstats.apply")) return noPerm(sender);
+        if (args.length < 2 || args.length > 3 || (args.length == 3 && !args[2].equalsIgnoreCase("run"))) {
+            sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
+            return true;
+        }
+        applyManager.apply(sender, args[1], args.length == 3);
+        return true;
+    }
+
+    /**
+     * {@code /vtstats query <expression> [sort <stat> [asc|desc]] [limit <n>]} or {@code /vtstats query page <n>}.
+     */
+    private boolean handleQuery(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("vtstats.query")) return noPerm(sender);
+        if (args.length < 2) {
+            sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
+            return true;
+        }
+        if (args[1].equalsIgnoreCase("page")) {
+            try {
+                queryManager.showPage(sender, args.length == 3 ? Integer.parseInt(args[2]) : 1);
+            } catch (NumberFormatException e) {
+                sender.sendMessage(lang.getPrefixedMessage("value-not-a-number", "value", args[2]));
+            }
+            return true;
+        }
+
+        int end = 1;
+        while (end < args.length && !args[end].equalsIgnoreCase("sort") && !args[end].equalsIgnoreCase("limit")) end++;
+        StatQuery query = compileQuery(sender, String.join(" ", Arrays.copyOfRange(args, 1, end)));
+        if (query == null) return true;
+
+        StatQuery.Operand sortBy = null;
+        boolean descending = true;
+        int limit = 0;
+        for (int i = end; i < args.length; i++) {
+            String option = args[i].toLowerCase();
+            if (option.equals("sort") && i + 1 < args.length) {
+                try {
+                    sortBy = StatQuery.compileStat(args[++i], catalog);
+                } catch (StatQuery.ParseException e) {
+                    sender.sendMessage(lang.getPrefixedMessage("stat-not-found", "stat", args[i]));
+                    return true;
                 }
+                if (i + 1 < args.length && (args[i + 1].equalsIgnoreCase("asc") || args[i + 1].equalsIgnoreCase("desc"))) {
+                    descending = args[++i].equalsIgnoreCase("desc");
+                }
+            } else if (option.equals("limit") && i + 1 < args.length) {
+                try {
+                    limit = Math.max(0, Integer.parseInt(args[++i]));
+                } catch (NumberFormatException e) {
+                    sender.sendMessage(lang.getPrefixedMessage("value-not-a-number", "value", args[i]));
+                    return true;
+                }
+            } else {
+                sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
+                return true;
             }
-        });
+        }
+        queryManager.query(sender, query, sortBy, descending, limit);
+        return true;
     }
 
-    private void runResetSingleStatForAllPlayersTask(CommandSender sender, String statArg) {
-        logger.logAction(sender, "reset server", statArg, "ALL", null);
-        sender.sendMessage(lang.getPrefixedMessage("reset-all-players-start").replace("{stat}", statArg));
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            for (OfflinePlayer p : Bukkit.getOfflinePlayers()) setStatValue(p, statArg, 0);
-            Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage(lang.getPrefixedMessage("reset-all-players-finish").replace("{stat}", statArg)));
-        });
+    private boolean handleAggregate(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("vtstats.aggregate")) return noPerm(sender);
+        if (args.length != 2) {
+            sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
+            return true;
+        }
+        aggregates.showAggregate(sender, args[1]);
+        return true;
     }
 
-    private void runResetAllStatsForAllPlayersTask(CommandSender sender) {
-        logger.logAction(sender, "reset all server", "N/A", "ALL", null);
-        sender.sendMessage(lang.getPrefixedMessage("reset-all-stats-for-all-players-start"));
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            for (OfflinePlayer p : Bukkit.getOfflinePlayers()) {
-                for (Statistic stat : Statistic.values()) {
-                    if (!isProtected(sender, stat.name())) {
-                        resetStatForAllQualifiers(p, stat);
-                    }
-                }
+    private boolean handleDiff(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("vtstats.diff")) return noPerm(sender);
+        if (args.length >= 2 && args[1].equalsIgnoreCase("page")) {
+            try {
+                diffs.showPage(sender, args.length == 3 ? Integer.parseInt(args[2]) : 1);
+            } catch (NumberFormatException e) {
+                sender.sendMessage(lang.getPrefixedMessage("value-not-a-number", "value", args[2]));
+            }
+            return true;
+        }
+        boolean restore = args.length == 4 && args[3].equalsIgnoreCase("restore");
+        if (args.length != 3 && !restore) {
+            sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
+            return true;
+        }
+        if (restore && !sender.hasPermission("vtstats.loadbackup")) return noPerm(sender);
+        diffs.diff(sender, args[1], args[2], restore);
+        return true;
+    }
+
+    private boolean handleTrend(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("vtstats.trend")) return noPerm(sender);
+        if (args.length != 4) {
+            sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
+            return true;
+        }
+        long since = parseSince(args[3]);
+        if (since < 0) {
+            sender.sendMessage(lang.getPrefixedMessage("invalid-usage"));
+            return true;
+        }
+        String statArg = args[2];
+        players.resolve(args[1], target -> {
+            if (target == null) {
+                sender.sendMessage(lang.getPrefixedMessage("player-not-found", "player", args[1]));
+            } else {
+                sampling.showTrend(sender, target, statArg, since);
             }
-            Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage(lang.getPrefixedMessage("reset-all-stats-for-all-players-finish")));
         });
+        return true;
     }
 
-    private void resetStatForAllQualifiers(OfflinePlayer p, Statistic s) {
+    /**
+     * @return the compiled query, or null after telling the sender what is wrong with it
+     */
+    private StatQuery compileQuery(CommandSender sender, String expression) {
         try {
-            if (s.getType() == SIMPLE_STAT_TYPE) p.setStatistic(s, 0);
-            else if (s.getType() == Statistic.Type.BLOCK) for (Material m : Material.values()) if (m.isBlock()) p.setStatistic(s, m, 0);
-            else if (s.getType() == Statistic.Type.ITEM) for (Material mat : Material.values()) if (mat.isItem()) p.setStatistic(s, mat, 0);
-            else if (s.getType() == Statistic.Type.ENTITY) for (EntityType et : EntityType.values()) if (et.isAlive()) p.setStatistic(s, et, 0);
-        } catch (Exception ignored) {}
+            return queryManager.compile(expression);
+        } catch (StatQuery.ParseException e) {
+            if (e.isUnknownStat()) {
+                sender.sendMessage(lang.getPrefixedMessage("stat-not-found", "stat", e.getToken()));
+            } else if (e.getToken().isEmpty()) {
+                sender.sendMessage(lang.getPrefixedMessage("query-incomplete"));
+            } else {
+                sender.sendMessage(lang.getPrefixedMessage("query-invalid", "token", e.getToken()));
+            }
+            return null;
+        }
     }
 
     @Override
     public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String alias, @NotNull String[] args) {
+        long start = metrics.start();
+        try {
+            return complete(sender, args);
+        } finally {
+            metrics.record(MetricsManager.Metric.TAB_COMPLETE, start);
+        }
+    }
+
+    private List<String> complete(CommandSender sender, String[] args) {
         if (!sender.hasPermission("vtstats.use")) return Collections.emptyList();
 
         final List<String> suggestions = new ArrayList<>();
         final String currentArg = args[args.length - 1].toLowerCase();
 
         if (args.length == 1) {
-            if (sender.hasPermission("vtstats.reload")) suggestions.add("reload");
-            if (sender.hasPermission("vtstats.backup")) suggestions.add("backup");
-            if (sender.hasPermission("vtstats.loadbackup")) suggestions.add("loadbackup");
-            if (sender.hasPermission("vtstats.reset.all")) suggestions.add("reset");
-            suggestions.add("confirm");
-            Bukkit.getOnlinePlayers().forEach(p -> suggestions.add(p.getName()));
-            return StringUtil.copyPartialMatches(currentArg, suggestions, new ArrayList<>());
+            collectPermitted(sender, subcommandIndex, SUBCOMMANDS, currentArg, suggestions);
+            playerNames.collect(currentArg, suggestions, MAX_SUGGESTIONS);
+            return suggestions;
         }
 
+        final List<String> candidates = new ArrayList<>();
         String mainCommand = args[0].toLowerCase();
         if (mainCommand.equals("reset")) {
             if (args.length == 2 && sender.hasPermission("vtstats.reset.all")) {
-                Arrays.stream(Statistic.values()).forEach(s -> suggestions.add(s.name().toLowerCase()));
-                suggestions.add("all");
+                if ("all".startsWith(currentArg)) suggestions.add("all");
+                statNameIndex.collect(currentArg, suggestions, MAX_SUGGESTIONS);
             } else if (args.length == 3 && sender.hasPermission("vtstats.reset.all")) {
-                suggestions.add("all");
+                candidates.add("all");
+                candidates.add("where");
+            } else if (args.length > 3 && args[2].equalsIgnoreCase("where") && sender.hasPermission("vtstats.reset.all")) {
+                statIndexFor(currentArg).collect(currentArg, suggestions, MAX_SUGGESTIONS);
+            }
+        } else if (mainCommand.equals("top")) {
+            if (args.length == 2 && sender.hasPermission("vtstats.top")) {
+                leaderboards.getTrackedStats().forEach(k -> candidates.add(k.toLowerCase()));
+            }
+        } else if (mainCommand.equals("history")) {
+            if (args.length == 2 && sender.hasPermission("vtstats.history")) {
+                playerNames.collect(currentArg, suggestions, MAX_SUGGESTIONS);
+                statIndexFor(currentArg).collect(currentArg, suggestions, MAX_SUGGESTIONS);
+            } else if (args.length == 3 && sender.hasPermission("vtstats.history")) {
+                candidates.addAll(Arrays.asList("1h", "1d", "7d", "30d"));
+            }
+        } else if (mainCommand.equals("cancel")) {
+            if (args.length == 2 && sender.hasPermission("vtstats.jobs")) {
+                jobManager.getJobs().forEach(j -> candidates.add(String.valueOf(j.getId())));
+            }
+        } else if (mainCommand.equals("query")) {
+            if (sender.hasPermission("vtstats.query")) {
+                if (args.length == 2) candidates.add("page");
+                candidates.addAll(Arrays.asList("and", "or", "not", "sort", "limit", "asc", "desc"));
+                statIndexFor(currentArg).collect(currentArg, suggestions, MAX_SUGGESTIONS);
+            }
+        } else if (mainCommand.equals("diff")) {
+            if (sender.hasPermission("vtstats.diff")) {
+                if (args.length == 2) {
+                    candidates.add("page");
+                    candidates.addAll(backupManager.getBackupList());
+                } else if (args.length == 3 && !args[1].equalsIgnoreCase("page")) {
+                    candidates.add(DiffManager.LIVE);
+                    candidates.addAll(backupManager.getBackupList());
+                } else if (args.length == 4 && sender.hasPermission("vtstats.loadbackup")) {
+                    candidates.add("restore");
+                }
+            }
+        } else if (mainCommand.equals("trend")) {
+            if (args.length == 2 && sender.hasPermission("vtstats.trend")) {
+                playerNames.collect(currentArg, suggestions, MAX_SUGGESTIONS);
+            } else if (args.length == 3 && sender.hasPermission("vtstats.trend")) {
+                plugin.getSettings().getSamplingStats().forEach(k -> candidates.add(k.toLowerCase()));
+            } else if (args.length == 4 && sender.hasPermission("vtstats.trend")) {
+                candidates.addAll(Arrays.asList("6h", "1d", "7d", "30d"));
+            }
+        } else if (mainCommand.equals("aggregate")) {
+            if (args.length == 2 && sender.hasPermission("vtstats.aggregate")) {
+                statIndexFor(currentArg).collect(currentArg, suggestions, MAX_SUGGESTIONS);
+            }
+        } else if (mainCommand.equals("apply")) {
+            if (args.length == 2 && sender.hasPermission("vtstats.apply")) {
+                candidates.addAll(applyManager.listFiles());
+            } else if (args.length == 3 && sender.hasPermission("vtstats.apply")) {
+                candidates.add("run");
+            }
+        } else if (mainCommand.equals("restore")) {
+            if (args.length == 2 && sender.hasPermission("vtstats.restore")) {
+                candidates.addAll(Arrays.asList("1h", "6h", "1d"));
+                candidates.addAll(backupManager.getBackupList());
+            }
+        } else if (mainCommand.equals("perf")) {
+            if (args.length == 2 && sender.hasPermission("vtstats.perf")) {
+                candidates.add("reset");
+            }
+        } else if (mainCommand.equals("verifybackup")) {
+            if (args.length == 2 && sender.hasPermission("vtstats.verifybackup")) {
+                candidates.add("all");
+                candidates.addAll(backupManager.getBackupList());
             }
         } else if (mainCommand.equals("loadbackup")) {
-            if (args.length == 2 && sender.hasPermission("vtstats.loadbackup")) {
-                suggestions.addAll(backupManager.getBackupList());
+            if (sender.hasPermission("vtstats.loadbackup")) {
+                if (args.length == 2) {
+                    candidates.addAll(backupManager.getBackupList());
+                } else if (args.length == 3) {
+                    if ("all".startsWith(currentArg)) suggestions.add("all");
+                    playerNames.collect(currentArg, suggestions, MAX_SUGGESTIONS);
+                } else if (args.length == 4) {
+                    statIndexFor(currentArg).collect(currentArg, suggestions, MAX_SUGGESTIONS);
+                }
             }
-        } else { 
+        } else {
             if (args.length == 2) {
-                if (sender.hasPermission("vtstats.check")) suggestions.add("check");
-                if (sender.hasPermission("vtstats.set")) suggestions.add("set");
-                if (sender.hasPermission("vtstats.reset")) suggestions.add("reset");
+                collectPermitted(sender, playerActionIndex, PLAYER_ACTIONS, currentArg, suggestions);
             } else if (args.length == 3) {
-                String action = args[1].toLowerCase();
-                if (action.equals("reset")) suggestions.add("all");
-                
-                String statArg = args[2].toUpperCase();
-                if (statArg.contains(":")) {
-                    String[] parts = statArg.split(":", 2);
-                    try {
-                        Statistic stat = Statistic.valueOf(parts[0]);
-                        if (stat.getType() == Statistic.Type.BLOCK || stat.getType() == Statistic.Type.ITEM) {
-                            Arrays.stream(Material.values())
-                                .filter(m -> (stat.getType() == Statistic.Type.BLOCK ? m.isBlock() : m.isItem()))
-                                .map(m -> parts[0].toLowerCase() + ":" + m.name().toLowerCase())
-                                .forEach(suggestions::add);
-                        } else if (stat.getType() == Statistic.Type.ENTITY) {
-                            Arrays.stream(EntityType.values()).filter(EntityType::isAlive)
-                                .map(e -> parts[0].toLowerCase() + ":" + e.name().toLowerCase())
-                                .forEach(suggestions::add);
-                        }
-                    } catch (IllegalArgumentException ignored) {}
-                } else {
-                    Arrays.stream(Statistic.values()).map(s -> s.name().toLowerCase()).forEach(suggestions::add);
-                }
+                if (args[1].equalsIgnoreCase("reset") && "all".startsWith(currentArg)) suggestions.add("all");
+                statIndexFor(currentArg).collect(currentArg, suggestions, MAX_SUGGESTIONS);
             }
         }
 
-        return StringUtil.copyPartialMatches(args[args.length - 1], suggestions, new ArrayList<>());
+        if (candidates.isEmpty()) return suggestions;
+        return StringUtil.copyPartialMatches(args[args.length - 1], candidates, suggestions);
+    }
+
+    /**
+     * Plain stat names until a colon is typed, then the qualified keys of that stat.
+     */
+    private PrefixIndex statIndexFor(String currentArg) {
+        return currentArg.indexOf(':') >= 0 ? statKeyIndex : statNameIndex;
+    }
+
+    private static void collectPermitted(CommandSender sender, PrefixIndex index, Map<String, String> permissions,
+                                         String prefix, List<String> out) {
+        int start = out.size();
+        index.collect(prefix, out, MAX_SUGGESTIONS);
+        for (int i = out.size() - 1; i >= start; i--) {
+            String permission = permissions.get(out.get(i));
+            if (permission != null && !sender.hasPermission(permission)) out.remove(i);
+        }
     }
 }
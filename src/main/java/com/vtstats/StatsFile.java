@@ -0,0 +1,104 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * In-memory copy of an offline player's {@code world/stats/<uuid>.json}.
+ * Entries the catalog does not know about are kept untouched in the JSON tree.
+ */
+public class StatsFile implements StatHolder {
+
+    private final UUID uuid;
+    private final File file;
+    private final JsonObject root;
+    private final StatVector values;
+    private final BitSet changed = new BitSet();
+
+    StatsFile(UUID uuid, File file, JsonObject root, StatVector values) {
+        this.uuid = uuid;
+        this.file = file;
+        this.root = root;
+        this.values = values;
+    }
+
+    @Override
+    public UUID getUniqueId() {
+        return uuid;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    JsonObject getRoot() {
+        return root;
+    }
+
+    BitSet getChanged() {
+        return changed;
+    }
+
+    @Override
+    public int get(int index) {
+        return values.get(index);
+    }
+
+    @Override
+    public void set(int index, int value) {
+        if (values.get(index) != value) {
+            values.set(index, value);
+            changed.set(index);
+        }
+    }
+
+    @Override
+    public StatVector toVector() {
+        return values.copy();
+    }
+
+    public boolean isDirty() {
+        return !changed.isEmpty();
+    }
+
+    static int readValue(JsonElement element) {
+        try {
+            return element.getAsInt();
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    static JsonObject section(JsonObject parent, String key) {
+        JsonElement element = parent.get(key);
+        if (element != null && element.isJsonObject()) return element.getAsJsonObject();
+        JsonObject created = new JsonObject();
+        parent.add(key, created);
+        return created;
+    }
+
+    static void forEachEntry(JsonObject stats, EntryConsumer consumer) {
+        for (Map.Entry<String, JsonElement> category : stats.entrySet()) {
+            if (!category.getValue().isJsonObject()) continue;
+            for (Map.Entry<String, JsonElement> entry : category.getValue().getAsJsonObject().entrySet()) {
+                consumer.accept(category.getKey(), entry.getKey(), readValue(entry.getValue()));
+            }
+        }
+    }
+
+    interface EntryConsumer {
+        void accept(String category, String key, int value);
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.Statistic;
+import org.bukkit.entity.Player;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Reads and writes offline players' vanilla stats files directly, so a bulk job costs one
+ * parse and at most one write per player instead of one round-trip per statistic.
+ * Online players are served through the Bukkit API because the server owns their counters.
+ */
+public class StatsFileManager {
+
+    private static final Map<Statistic, String> TYPED_CATEGORIES = new EnumMap<>(Statistic.class);
+    private static final Map<String, String> CUSTOM_KEYS = new HashMap<>();
+
+    static {
+        typed("MINE_BLOCK", "mined");
+        typed("BREAK_ITEM", "broken");
+        typed("CRAFT_ITEM", "crafted");
+        typed("USE_ITEM", "used");
+        typed("PICKUP", "picked_up");
+        typed("DROP", "dropped");
+        typed("KILL_ENTITY", "killed");
+        typed("ENTITY_KILLED_BY", "killed_by");
+
+        CUSTOM_KEYS.put("PLAY_ONE_MINUTE", "play_time");
+        CUSTOM_KEYS.put("DROP_COUNT", "drop");
+        CUSTOM_KEYS.put("CAKE_SLICES_EATEN", "eat_cake_slice");
+        CUSTOM_KEYS.put("CAULDRON_FILLED", "fill_cauldron");
+        CUSTOM_KEYS.put("CAULDRON_USED", "use_cauldron");
+        CUSTOM_KEYS.put("ARMOR_CLEANED", "clean_armor");
+        CUSTOM_KEYS.put("BANNER_CLEANED", "clean_banner");
+        CUSTOM_KEYS.put("BREWINGSTAND_INTERACTION", "interact_with_brewingstand");
+        CUSTOM_KEYS.put("BEACON_INTERACTION", "interact_with_beacon");
+        CUSTOM_KEYS.put("DROPPER_INSPECTED", "inspect_dropper");
+        CUSTOM_KEYS.put("HOPPER_INSPECTED", "inspect_hopper");
+        CUSTOM_KEYS.put("DISPENSER_INSPECTED", "inspect_dispenser");
+        CUSTOM_KEYS.put("NOTEBLOCK_PLAYED", "play_noteblock");
+        CUSTOM_KEYS.put("NOTEBLOCK_TUNED", "tune_noteblock");
+        CUSTOM_KEYS.put("FLOWER_POTTED", "pot_flower");
+        CUSTOM_KEYS.put("TRAPPED_CHEST_TRIGGERED", "trigger_trapped_chest");
+        CUSTOM_KEYS.put("ENDERCHEST_OPENED", "open_enderchest");
+        CUSTOM_KEYS.put("ITEM_ENCHANTED", "enchant_item");
+        CUSTOM_KEYS.put("RECORD_PLAYED", "play_record");
+        CUSTOM_KEYS.put("FURNACE_INTERACTION", "interact_with_furnace");
+        CUSTOM_KEYS.put("CRAFTING_TABLE_INTERACTION", "interact_with_crafting_table");
+        CUSTOM_KEYS.put("CHEST_OPENED", "open_chest");
+        CUSTOM_KEYS.put("SHULKER_BOX_OPENED", "open_shulker_box");
+    }
+
+    private static void typed(String statName, String category) {
+        try {
+            TYPED_CATEGORIES.put(Statistic.valueOf(statName), "minecraft:" + category);
+        } catch (IllegalArgumentException ignored) {}
+    }
+
+    private static final int APPLY_CHUNK = 64;
+    private static final long ONLINE_READ_TIMEOUT_SECONDS = 60;
+
+    private final StatCatalog catalog;
+    private final MainThreadApplier applier;
+    private final AdaptiveThrottle throttle;
+    private final MetricsManager metrics;
+    private final File statsFolder;
+    private final Gson gson = new Gson();
+    private final String[] categories;
+    private final String[] entryKeys;
+    private final Map<String, Map<String, Integer>> reverseIndex = new HashMap<>();
+    private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
+    public StatsFileManager(StatCatalog catalog, MainThreadApplier applier, AdaptiveThrottle throttle,
+                            MetricsManager metrics) {
+        this.catalog = catalog;
+        this.applier = applier;
+        this.throttle = throttle;
+        this.metrics = metrics;
+        this.statsFolder = new File(Bukkit.getWorlds().get(0).getWorldFolder(), "stats");
+
+        this.categories = new String[catalog.size()];
+        this.entryKeys = new String[catalog.size()];
+        for (int i = 0; i < catalog.size(); i++) {
+            Statistic stat = catalog.getStatistic(i);
+            if (catalog.getMaterial(i) != null) {
+                categories[i] = TYPED_CATEGORIES.get(stat);
+                entryKeys[i] = catalog.getMaterial(i).getKey().toString();
+            } else if (catalog.getEntityType(i) != null) {
+                categories[i] = TYPED_CATEGORIES.get(stat);
+                entryKeys[i] = catalog.getEntityType(i).getKey().toString();
+            } else {
+                categories[i] = "minecraft:custom";
+                entryKeys[i] = "minecraft:" + CUSTOM_KEYS.getOrDefault(stat.name(), stat.name().toLowerCase(Locale.ROOT));
+            }
+            if (categories[i] != null) {
+                reverseIndex.computeIfAbsent(categories[i], k -> new HashMap<>()).put(entryKeys[i], i);
+            }
+        }
+    }
+
+    /**
+     * @param listener told about every value written through {@link #save} or reported to {@link #notifyChange},
+     *                 on the saving thread
+     */
+    public void addChangeListener(ChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Reports a value that was changed without going through {@link #save}, e.g. directly through the Bukkit API.
+     */
+    public void notifyChange(UUID uuid, int index, int value) {
+        for (ChangeListener listener : changeListeners) {
+            listener.onChange(uuid, index, value);
+        }
+    }
+
+    public File getStatsFolder() {
+        return statsFolder;
+    }
+
+    public File getStatsFile(UUID uuid) {
+        return new File(statsFolder, uuid + ".json");
+    }
+
+    /**
+     * @return every UUID that has a stats file on disk
+     */
+    public List<UUID> listStoredPlayers() {
+        String[] names = statsFolder.list((dir, name) -> name.endsWith(".json"));
+        if (names == null) return Collections.emptyList();
+        List<UUID> uuids = new ArrayList<>(names.length);
+        for (String name : names) {
+            try {
+                uuids.add(UUID.fromString(name.substring(0, name.length() - 5)));
+            } catch (IllegalArgumentException ignored) {}
+        }
+        return uuids;
+    }
+
+    public StatHolder open(OfflinePlayer player) throws IOException {
+        Player online = player.getPlayer();
+        if (online != null && Bukkit.isPrimaryThread()) return new OnlineStatHolder(online, null);
+        if (online != null) {
+            StatVector values = readOnline(online);
+            if (values != null) return new OnlineStatHolder(online, values);
+        }
+        return load(player.getUniqueId());
+    }
+
+    /**
+     * Bukkit statistics may only be read on the main thread, so the read is queued on the applier, behind every
+     * change queued before it, and this waits for it.
+     *
+     * @return every non-zero value, or null if the player left before the read ran
+     */
+    private StatVector readOnline(Player player) throws IOException {
+        CompletableFuture<StatVector> values = new CompletableFuture<>();
+        applier.submit(() -> {
+            try {
+                values.complete(player.isOnline() ? readLive(player) : null);
+            } catch (RuntimeException e) {
+                values.completeExceptionally(e);
+            }
+        });
+        try {
+            return values.get(ONLINE_READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading stats of " + player.getName());
+        } catch (ExecutionException e) {
+            throw new IOException("Could not read stats of " + player.getName(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out waiting for the main thread to read stats of " + player.getName());
+        }
+    }
+
+    private StatVector readLive(Player player) {
+        long start = metrics.start();
+        StatVector values = new StatVector();
+        for (int i = 0; i < catalog.size(); i++) {
+            int value = catalog.getValue(player, i);
+            if (value != 0) values.append(i, value);
+        }
+        metrics.record(MetricsManager.Metric.STAT_GET_ONLINE, start);
+        return values;
+    }
+
+    public StatVector readAll(OfflinePlayer player) throws IOException {
+        return open(player).toVector();
+    }
+
+    @SuppressWarnings("deprecation")
+    public StatsFile load(UUID uuid) throws IOException {
+        long start = metrics.start();
+        File file = getStatsFile(uuid);
+        StatVector values = new StatVector();
+        JsonObject root;
+        if (file.exists()) {
+            boolean acquired;
+            try {
+                acquired = throttle.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to read " + file.getName());
+            }
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                JsonElement parsed = new JsonParser().parse(reader);
+                root = parsed != null && parsed.isJsonObject() ? parsed.getAsJsonObject() : new JsonObject();
+            } catch (RuntimeException e) {
+                throw new IOException("Malformed stats file " + file.getName(), e);
+            } finally {
+                if (acquired) throttle.release();
+            }
+            throttle.consume(file.length());
+        } else {
+            root = new JsonObject();
+        }
+        JsonElement stats = root.get("stats");
+        if (stats != null && stats.isJsonObject()) {
+            StatsFile.forEachEntry(stats.getAsJsonObject(), (category, key, value) -> {
+                int index = indexOf(category, key);
+                if (index >= 0 && value != 0) values.set(index, value);
+            });
+        }
+        metrics.record(MetricsManager.Metric.STAT_GET_OFFLINE, start);
+        return new StatsFile(uuid, file, root, values);
+    }
+
+    /**
+     * Writes back every change made through the holder. Offline files are replaced atomically.
+     * Changes for online players, including players who logged in since their file was read,
+     * are queued on the {@link MainThreadApplier} and go through the Bukkit API there.
+     */
+    @SuppressWarnings("deprecation")
+    public void save(StatHolder holder) throws IOException {
+        if (holder instanceof OnlineStatHolder) {
+            OnlineStatHolder online = (OnlineStatHolder) holder;
+            applyOnMainThread(online.getUniqueId(), online.pending);
+            notifyChanges(online.getUniqueId(), online.pending);
+            online.pending = new StatVector();
+            return;
+        }
+        if (!(holder instanceof StatsFile)) return;
+        StatsFile statsFile = (StatsFile) holder;
+        if (!statsFile.isDirty()) return;
+
+        BitSet changed = statsFile.getChanged();
+        if (Bukkit.getPlayer(statsFile.getUniqueId()) != null) {
+            StatVector pending = new StatVector(changed.cardinality());
+            for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) pending.append(i, statsFile.get(i));
+            applyOnMainThread(statsFile.getUniqueId(), pending);
+            notifyChanges(statsFile.getUniqueId(), pending);
+            changed.clear();
+            return;
+        }
+
+        long start = metrics.start();
+        JsonObject root = statsFile.getRoot();
+        JsonObject stats = StatsFile.section(root, "stats");
+        for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+            if (categories[i] == null) continue;
+            int value = statsFile.get(i);
+            if (value == 0) {
+                JsonElement category = stats.get(categories[i]);
+                if (category != null && category.isJsonObject()) category.getAsJsonObject().remove(entryKeys[i]);
+            } else {
+                StatsFile.section(stats, categories[i]).addProperty(entryKeys[i], value);
+            }
+        }
+        if (!root.has("DataVersion")) {
+            root.addProperty("DataVersion", Bukkit.getUnsafe().getDataVersion());
+        }
+
+        writeAtomically(statsFile.getFile(), gson.toJson(root).getBytes(StandardCharsets.UTF_8));
+        metrics.record(MetricsManager.Metric.STAT_SET_OFFLINE, start);
+        for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+            notifyChange(statsFile.getUniqueId(), i, statsFile.get(i));
+        }
+        changed.clear();
+    }
+
+    private void notifyChanges(UUID uuid, StatVector changes) {
+        if (changeListeners.isEmpty()) return;
+        for (int i = 0; i < changes.size(); i++) {
+            notifyChange(uuid, changes.keyAt(i), changes.valueAt(i));
+        }
+    }
+
+    /**
+     * @param changes handed over; the caller must not modify it afterwards
+     */
+    private void applyOnMainThread(UUID uuid, StatVector changes) {
+        for (int from = 0; from < changes.size(); from += APPLY_CHUNK) {
+            int start = from;
+            int end = Math.min(changes.size(), from + APPLY_CHUNK);
+            applier.submit(() -> {
+                long started = metrics.start();
+                OfflinePlayer player = Bukkit.getOfflinePlayer(uuid);
+                for (int i = start; i < end; i++) {
+                    catalog.setValue(player, changes.keyAt(i), changes.valueAt(i));
+                }
+                metrics.record(MetricsManager.Metric.STAT_SET_ONLINE, started);
+            });
+        }
+    }
+
+    private void writeAtomically(File target, byte[] data) throws IOException {
+        if (!statsFolder.exists()) statsFolder.mkdirs();
+        throttle.consume(data.length);
+        Path tmp = new File(target.getParentFile(), target.getName() + ".vtstats.tmp").toPath();
+        Files.write(tmp, data);
+        try {
+            Files.move(tmp, target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private int indexOf(String category, String key) {
+        Map<String, Integer> entries = reverseIndex.get(category);
+        if (entries == null) return -1;
+        Integer index = entries.get(key);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Opened off the main thread, it holds the values read on the main thread at that time. Opened on the main
+     * thread, it reads live values and must stay there. Writes are buffered until {@link #save} queues them for
+     * the main thread.
+     */
+    private class OnlineStatHolder implements StatHolder {
+        private final Player player;
+        private final StatVector values;
+        private StatVector pending = new StatVector();
+
+        OnlineStatHolder(Player player, StatVector values) {
+            this.player = player;
+            this.values = values;
+        }
+
+        @Override
+        public UUID getUniqueId() {
+            return player.getUniqueId();
+        }
+
+        @Override
+        public boolean isOnline() {
+            return true;
+        }
+
+        @Override
+        public int get(int index) {
+            if (pending.containsKey(index)) return pending.get(index);
+            return values != null ? values.get(index) : catalog.getValue(player, index);
+        }
+
+        @Override
+        public void set(int index, int value) {
+            pending.set(index, value);
+        }
+
+        @Override
+        public StatVector toVector() {
+            StatVector copy = values != null ? values.copy() : readLive(player);
+            for (int i = 0; i < pending.size(); i++) copy.set(pending.keyAt(i), pending.valueAt(i));
+            return copy;
+        }
+    }
+
+    public interface ChangeListener {
+        void onChange(UUID uuid, int index, int value);
+    }
+}
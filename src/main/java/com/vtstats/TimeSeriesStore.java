@@ -0,0 +1,385 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only store of stat samples with one segment per day. A segment {@code <date>.vtts} is a sequence of
+ * length-prefixed blocks, one per sampling round. A block holds the round's players as a UUID column followed by
+ * one column per stat, each value stored as a zig-zag varint delta against the same player's value in the previous
+ * block. Every {@link #KEYFRAME_INTERVAL}th block, and any block whose stats differ from the previous one, is a
+ * keyframe whose deltas are taken against zero. {@code <date>.vtti} indexes each block by time and offset so a
+ * reader starts at the last keyframe before the range it needs.
+ * <p>
+ * Segments older than the full-resolution window are rewritten to keep one block per hour and marked with an
+ * {@code -hourly} suffix; segments past the retention window are deleted.
+ */
+public class TimeSeriesStore {
+
+    private static final String SEGMENT_SUFFIX = ".vtts";
+    private static final String INDEX_SUFFIX = ".vtti";
+    private static final String HOURLY_MARK = "-hourly";
+    private static final int INDEX_ENTRY_SIZE = 17;
+    private static final int KEYFRAME_INTERVAL = 12;
+    private static final int FLAG_KEYFRAME = 1;
+
+    private final File folder;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private LocalDate currentDay;
+    private Writer writer;
+
+    public TimeSeriesStore(File folder) {
+        this.folder = folder;
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+    }
+
+    /**
+     * One sampling round: the value of every stat in {@code keys} for every player in {@code players}.
+     */
+    public static final class Block {
+        private final long time;
+        private final String[] keys;
+        private final UUID[] players;
+        private final int[][] values;
+
+        /**
+         * @param values indexed {@code [stat][player]}
+         */
+        public Block(long time, String[] keys, UUID[] players, int[][] values) {
+            this.time = time;
+            this.keys = keys;
+            this.players = players;
+            this.values = values;
+        }
+
+        public long getTime() {
+            return time;
+        }
+    }
+
+    public synchronized void append(Block block) throws IOException {
+        LocalDate day = Instant.ofEpochMilli(block.time).atZone(zone).toLocalDate();
+        if (!day.equals(currentDay)) {
+            closeWriter();
+            currentDay = day;
+            writer = new Writer(segmentFile(day, false), indexFile(day, false), false);
+        }
+        writer.write(block);
+    }
+
+    /**
+     * @return {@code [time, value]} pairs of the player's stat between {@code from} and {@code to}, oldest first
+     */
+    public synchronized List<long[]> read(UUID player, String statKey, long from, long to) throws IOException {
+        List<long[]> points = new ArrayList<>();
+        LocalDate first = Instant.ofEpochMilli(from).atZone(zone).toLocalDate();
+        LocalDate last = Instant.ofEpochMilli(to).atZone(zone).toLocalDate();
+        for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+            boolean hourly = segmentFile(day, true).exists();
+            File segment = segmentFile(day, hourly);
+            if (!segment.exists()) continue;
+            long offset = startOffset(indexFile(day, hourly), from);
+            forEachBlock(segment, offset, block -> {
+                if (block.time < from || block.time > to) return block.time <= to;
+                int stat = Arrays.asList(block.keys).indexOf(statKey);
+                if (stat < 0) return true;
+                for (int i = 0; i < block.players.length; i++) {
+                    if (block.players[i].equals(player)) {
+                        points.add(new long[]{block.time, block.values[stat][i]});
+                        break;
+                    }
+                }
+                return true;
+            });
+        }
+        return points;
+    }
+
+    /**
+     * Downsamples segments older than {@code fullDays} to one block per hour and deletes segments older than
+     * {@code keepDays}. A value of 0 disables that step.
+     */
+    public synchronized void applyRetention(int fullDays, int keepDays) throws IOException {
+        LocalDate today = LocalDate.now(zone);
+        String[] names = folder.list((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (names == null) return;
+        for (String name : names) {
+            String base = name.substring(0, name.length() - SEGMENT_SUFFIX.length());
+            boolean hourly = base.endsWith(HOURLY_MARK);
+            LocalDate day;
+            try {
+                day = LocalDate.parse(hourly ? base.substring(0, base.length() - HOURLY_MARK.length()) : base);
+            } catch (RuntimeException e) {
+                continue;
+            }
+            if (day.equals(currentDay)) continue;
+            if (keepDays > 0 && day.isBefore(today.minusDays(keepDays))) {
+                Files.deleteIfExists(segmentFile(day, hourly).toPath());
+                Files.deleteIfExists(indexFile(day, hourly).toPath());
+            } else if (!hourly && fullDays > 0 && day.isBefore(today.minusDays(fullDays))) {
+                downsample(day);
+            }
+        }
+    }
+
+    private void downsample(LocalDate day) throws IOException {
+        File tempSegment = new File(folder, day + HOURLY_MARK + SEGMENT_SUFFIX + ".tmp");
+        File tempIndex = new File(folder, day + HOURLY_MARK + INDEX_SUFFIX + ".tmp");
+        long[] lastHour = {-1};
+        try (Writer out = new Writer(tempSegment, tempIndex, true)) {
+            IOException[] failure = new IOException[1];
+            forEachBlock(segmentFile(day, false), 0, block -> {
+                long hour = TimeUnit.MILLISECONDS.toHours(block.time);
+                if (hour == lastHour[0]) return true;
+                lastHour[0] = hour;
+                try {
+                    out.write(block);
+                    return true;
+                } catch (IOException e) {
+                    failure[0] = e;
+                    return false;
+                }
+            });
+            if (failure[0] != null) throw failure[0];
+        }
+        Files.move(tempSegment.toPath(), segmentFile(day, true).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(tempIndex.toPath(), indexFile(day, true).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(segmentFile(day, false).toPath());
+        Files.deleteIfExists(indexFile(day, false).toPath());
+    }
+
+    public synchronized void close() {
+        try {
+            closeWriter();
+        } catch (IOException ignored) {}
+    }
+
+    private void closeWriter() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private File segmentFile(LocalDate day, boolean hourly) {
+        return new File(folder, day + (hourly ? HOURLY_MARK : "") + SEGMENT_SUFFIX);
+    }
+
+    private File indexFile(LocalDate day, boolean hourly) {
+        return new File(folder, day + (hourly ? HOURLY_MARK : "") + INDEX_SUFFIX);
+    }
+
+    /**
+     * @return the offset of the last keyframe at or before {@code from}, or 0
+     */
+    private static long startOffset(File index, long from) throws IOException {
+        if (!index.exists()) return 0;
+        byte[] data = Files.readAllBytes(index.toPath());
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long offset = 0;
+        for (int pos = 0; pos + INDEX_ENTRY_SIZE <= data.length; pos += INDEX_ENTRY_SIZE) {
+            long time = buffer.getLong(pos);
+            if (time > from) break;
+            if ((buffer.get(pos + 16) & FLAG_KEYFRAME) != 0) offset = buffer.getLong(pos + 8);
+        }
+        return offset;
+    }
+
+    private interface BlockVisitor {
+        /**
+         * @return false to stop reading
+         */
+        boolean visit(Block block);
+    }
+
+    /**
+     * Decodes blocks from {@code offset}, which must be a keyframe, to the end of the segment or a truncated block.
+     */
+    private static void forEachBlock(File segment, long offset, BlockVisitor visitor) throws IOException {
+        try (FileInputStream file = new FileInputStream(segment)) {
+            file.getChannel().position(offset);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(file));
+            String[] keys = new String[0];
+            Map<UUID, int[]> previous = new HashMap<>();
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    return;
+                }
+                DataInputStream block = new DataInputStream(new ByteArrayInputStream(payload));
+                int flags = block.readUnsignedByte();
+                long time = block.readLong();
+                if ((flags & FLAG_KEYFRAME) != 0) {
+                    keys = new String[(int) VarInts.readUnsigned(block)];
+                    for (int i = 0; i < keys.length; i++) keys[i] = block.readUTF();
+                    previous.clear();
+                }
+                UUID[] players = new UUID[(int) VarInts.readUnsigned(block)];
+                for (int i = 0; i < players.length; i++) players[i] = new UUID(block.readLong(), block.readLong());
+                int[][] values = new int[keys.length][players.length];
+                int[][] rows = new int[players.length][];
+                for (int i = 0; i < players.length; i++) rows[i] = previous.get(players[i]);
+                for (int s = 0; s < keys.length; s++) {
+                    for (int i = 0; i < players.length; i++) {
+                        int base = rows[i] != null ? rows[i][s] : 0;
+                        values[s][i] = (int) (base + VarInts.readSigned(block));
+                    }
+                }
+                for (int i = 0; i < players.length; i++) {
+                    int[] row = new int[keys.length];
+                    for (int s = 0; s < keys.length; s++) row[s] = values[s][i];
+                    previous.put(players[i], row);
+                }
+                if (!visitor.visit(new Block(time, keys, players, values))) return;
+            }
+        }
+    }
+
+    /**
+     * Appends blocks to one segment and its index, keeping the previous values needed for the deltas.
+     */
+    private static final class Writer implements AutoCloseable {
+        private final FileChannel segment;
+        private final FileChannel index;
+        private final Map<UUID, int[]> previous = new HashMap<>();
+        private String[] keys;
+        private int sinceKeyframe;
+
+        private Writer(File segmentFile, File indexFile, boolean truncate) throws IOException {
+            StandardOpenOption mode = truncate ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND;
+            this.segment = FileChannel.open(segmentFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, mode);
+            this.index = FileChannel.open(indexFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, mode);
+            try {
+                if (!truncate) dropTornTail();
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+            // Blocks already in the file were encoded by an earlier writer, so the first block here starts fresh.
+            this.sinceKeyframe = KEYFRAME_INTERVAL;
+        }
+
+        /**
+         * Cuts the segment and index back to the last block that was completely written and indexed, so a block
+         * torn by a crash is not followed by new blocks that could then never be read.
+         */
+        private void dropTornTail() throws IOException {
+            long segmentSize = segment.size();
+            long entries = index.size() / INDEX_ENTRY_SIZE;
+            long end = 0;
+            long kept = 0;
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+            ByteBuffer length = ByteBuffer.allocate(4);
+            for (long i = 0; i < entries; i++) {
+                entry.clear();
+                readFully(index, entry, i * INDEX_ENTRY_SIZE);
+                long offset = entry.getLong(8);
+                if (offset != end || offset + 4 > segmentSize) break;
+                length.clear();
+                readFully(segment, length, offset);
+                long blockEnd = offset + 4 + length.getInt(0);
+                if (blockEnd > segmentSize || blockEnd < offset + 4) break;
+                end = blockEnd;
+                kept = i + 1;
+            }
+            if (index.size() != kept * INDEX_ENTRY_SIZE) index.truncate(kept * INDEX_ENTRY_SIZE);
+            if (segmentSize != end) segment.truncate(end);
+        }
+
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException();
+            }
+        }
+
+        private void write(Block block) throws IOException {
+            boolean keyframe = sinceKeyframe >= KEYFRAME_INTERVAL || !Arrays.equals(keys, block.keys);
+            if (keyframe) {
+                previous.clear();
+                keys = block.keys;
+                sinceKeyframe = 0;
+            }
+            sinceKeyframe++;
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + block.players.length * (16 + 2 * keys.length));
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0);
+            out.writeByte(keyframe ? FLAG_KEYFRAME : 0);
+            out.writeLong(block.time);
+            if (keyframe) {
+                VarInts.writeUnsigned(out, keys.length);
+                for (String key : keys) out.writeUTF(key);
+            }
+            VarInts.writeUnsigned(out, block.players.length);
+            for (UUID uuid : block.players) {
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            }
+            int[][] rows = new int[block.players.length][];
+            for (int i = 0; i < block.players.length; i++) rows[i] = previous.get(block.players[i]);
+            for (int s = 0; s < keys.length; s++) {
+                for (int i = 0; i < block.players.length; i++) {
+                    int base = rows[i] != null ? rows[i][s] : 0;
+                    VarInts.writeSigned(out, (long) block.values[s][i] - base);
+                }
+            }
+            for (int i = 0; i < block.players.length; i++) {
+                int[] row = new int[keys.length];
+                for (int s = 0; s < keys.length; s++) row[s] = block.values[s][i];
+                previous.put(block.players[i], row);
+            }
+
+            out.flush();
+            ByteBuffer data = ByteBuffer.wrap(bytes.toByteArray());
+            data.putInt(0, data.remaining() - 4);
+            long offset = segment.size();
+            while (data.hasRemaining()) segment.write(data);
+
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+            entry.putLong(block.time).putLong(offset).put((byte) (keyframe ? FLAG_KEYFRAME : 0)).flip();
+            while (entry.hasRemaining()) index.write(entry);
+        }
+
+        @Override
+        public void close() throws IOException {
+            segment.close();
+            index.close();
+        }
+    }
+}
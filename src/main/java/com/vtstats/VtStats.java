@@ -14,20 +14,64 @@ import org.bukkit.plugin.java.JavaPlugin;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 public final class VtStats extends JavaPlugin {
 
+    private StatCatalog statCatalog;
+    private volatile PluginSettings settings;
+    private MainThreadApplier mainThreadApplier;
+    private MetricsManager metricsManager;
+    private AdaptiveThrottle throttle;
+    private StatsFileManager statsFileManager;
     private LangManager langManager;
     private LogManager logManager;
+    private JobManager jobManager;
+    private ChangeJournal changeJournal;
     private BackupManager backupManager;
+    private ResetManager resetManager;
+    private LeaderboardManager leaderboardManager;
+    private PlayerResolver playerResolver;
+    private ApplyManager applyManager;
+    private QueryManager queryManager;
+    private AggregateManager aggregateManager;
+    private SamplingManager samplingManager;
+    private DiffManager diffManager;
+    private ForkJoinPool scanPool;
     private final Map<UUID, ConfirmationTask> pendingConfirmations = new ConcurrentHashMap<>();
 
     @Override
     public void onEnable() {
         saveDefaultConfig();
+        this.statCatalog = new StatCatalog();
+        this.settings = PluginSettings.load(getConfig(), statCatalog, getLogger());
+        this.mainThreadApplier = new MainThreadApplier(this, settings.getTickBudgetMillis());
+        this.mainThreadApplier.start();
+        this.scanPool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("VtStats-Scan-" + thread.getPoolIndex());
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        this.metricsManager = new MetricsManager(this);
+        this.throttle = new AdaptiveThrottle(this);
+        this.statsFileManager = new StatsFileManager(statCatalog, mainThreadApplier, throttle, metricsManager);
         this.langManager = new LangManager(this);
-        this.logManager = new LogManager(this);
-        this.backupManager = new BackupManager(this, langManager);
+        this.logManager = new LogManager(this, statCatalog);
+        this.jobManager = new JobManager(this, langManager, mainThreadApplier);
+        this.changeJournal = new ChangeJournal(this, statCatalog, statsFileManager);
+        this.backupManager = new BackupManager(this, langManager, statCatalog, statsFileManager, mainThreadApplier, jobManager, changeJournal);
+        this.resetManager = new ResetManager(this, langManager, logManager, statCatalog, statsFileManager, mainThreadApplier, jobManager);
+        this.leaderboardManager = new LeaderboardManager(this, statCatalog, statsFileManager);
+        this.playerResolver = new PlayerResolver(this, statsFileManager);
+        this.queryManager = new QueryManager(this, langManager, statCatalog, statsFileManager, playerResolver);
+        this.aggregateManager = new AggregateManager(this, langManager, statCatalog, statsFileManager);
+        this.samplingManager = new SamplingManager(this, langManager, statCatalog);
+        this.diffManager = new DiffManager(this, langManager, statCatalog, statsFileManager, mainThreadApplier, jobManager, backupManager, playerResolver);
+        this.applyManager = new ApplyManager(this, langManager, logManager, statCatalog, statsFileManager, playerResolver, jobManager);
+        jobManager.resumeInterrupted();
 
         PluginCommand command = getCommand("vtstats");
         if (command != null) {
@@ -46,12 +90,87 @@ public final class VtStats extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        // Wakes jobs parked on the throttle so they can stop.
+        if (throttle != null) {
+            throttle.shutdown();
+        }
+        if (jobManager != null) {
+            jobManager.shutdown();
+        }
+        if (leaderboardManager != null) {
+            leaderboardManager.shutdown();
+        }
+        if (samplingManager != null) {
+            samplingManager.shutdown();
+        }
+        if (metricsManager != null) {
+            metricsManager.shutdown();
+        }
+        if (mainThreadApplier != null) {
+            mainThreadApplier.stop();
+        }
+        if (scanPool != null) {
+            scanPool.shutdownNow();
+        }
+        if (changeJournal != null) {
+            changeJournal.shutdown();
+        }
+        if (backupManager != null) {
+            backupManager.shutdown();
+        }
+        if (logManager != null) {
+            logManager.shutdown();
+        }
         getLogger().info("VtStats has been disabled.");
     }
 
     public void reload() {
         reloadConfig();
+        this.settings = PluginSettings.load(getConfig(), statCatalog, getLogger());
         langManager.loadLang();
+        logManager.loadSettings();
+        leaderboardManager.loadSettings();
+        samplingManager.loadSettings();
+        changeJournal.loadSettings();
+        backupManager.loadSettings();
+        mainThreadApplier.setBudgetMillis(settings.getTickBudgetMillis());
+        throttle.loadSettings();
+        metricsManager.loadSettings();
+    }
+
+    /**
+     * @return the settings of the last (re)load; never read config.yml directly on hot paths
+     */
+    public PluginSettings getSettings() {
+        return settings;
+    }
+
+    public StatCatalog getStatCatalog() {
+        return statCatalog;
+    }
+
+    public MainThreadApplier getMainThreadApplier() {
+        return mainThreadApplier;
+    }
+
+    public MetricsManager getMetricsManager() {
+        return metricsManager;
+    }
+
+    public AdaptiveThrottle getThrottle() {
+        return throttle;
+    }
+
+    /**
+     * @return the pool for parallel scans over the stats files; their tasks block on disk and on the throttle,
+     *         which must not tie up {@link ForkJoinPool#commonPool()}
+     */
+    public ForkJoinPool getScanPool() {
+        return scanPool;
+    }
+
+    public StatsFileManager getStatsFileManager() {
+        return statsFileManager;
     }
 
     public LangManager getLangManager() {
@@ -62,17 +181,57 @@ public final class VtStats extends JavaPlugin {
         return logManager;
     }
 
+    public JobManager getJobManager() {
+        return jobManager;
+    }
+
     public BackupManager getBackupManager() {
         return backupManager;
     }
 
+    public ResetManager getResetManager() {
+        return resetManager;
+    }
+
+    public LeaderboardManager getLeaderboardManager() {
+        return leaderboardManager;
+    }
+
+    public PlayerResolver getPlayerResolver() {
+        return playerResolver;
+    }
+
+    public ApplyManager getApplyManager() {
+        return applyManager;
+    }
+
+    public QueryManager getQueryManager() {
+        return queryManager;
+    }
+
+    public AggregateManager getAggregateManager() {
+        return aggregateManager;
+    }
+
+    public SamplingManager getSamplingManager() {
+        return samplingManager;
+    }
+
+    public DiffManager getDiffManager() {
+        return diffManager;
+    }
+
+    public ChangeJournal getChangeJournal() {
+        return changeJournal;
+    }
+
     public void requestConfirmation(Player player, Runnable task) {
-        long timeout = getConfig().getLong("confirmation.timeout-seconds", 30) * 1000;
+        long timeout = settings.getConfirmationTimeoutSeconds() * 1000L;
         ConfirmationTask confirmationTask = new ConfirmationTask(task, System.currentTimeMillis() + timeout);
         pendingConfirmations.put(player.getUniqueId(), confirmationTask);
 
-        String time = String.valueOf(getConfig().getInt("confirmation.timeout-seconds", 30));
-        player.sendMessage(langManager.getPrefixedMessage("confirmation-required").replace("{time}", time));
+        String time = String.valueOf(settings.getConfirmationTimeoutSeconds());
+        player.sendMessage(langManager.getPrefixedMessage("confirmation-required", "time", time));
     }
 
     public boolean confirmAction(Player player) {
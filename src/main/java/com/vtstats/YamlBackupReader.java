@@ -0,0 +1,129 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a backup directory written by {@link YamlBackupWriter}: one {@code <uuid>.yml} per player.
+ * Only the file names are read up front; each record is parsed when it is read.
+ */
+public class YamlBackupReader implements BackupReader {
+
+    private final File backupDir;
+    private final StatCatalog catalog;
+    private final UUID[] players;
+
+    public YamlBackupReader(File backupDir, StatCatalog catalog) throws IOException {
+        String[] names = backupDir.list((dir, name) -> name.endsWith(".yml"));
+        if (names == null) throw new IOException("Not a backup directory: " + backupDir.getName());
+        UUID[] uuids = new UUID[names.length];
+        int count = 0;
+        for (String name : names) {
+            try {
+                uuids[count++] = UUID.fromString(name.substring(0, name.length() - 4));
+            } catch (IllegalArgumentException e) {
+                count--;
+            }
+        }
+        this.players = Arrays.copyOf(uuids, count);
+        Arrays.sort(players);
+        this.backupDir = backupDir;
+        this.catalog = catalog;
+    }
+
+    @Override
+    public int getPlayerCount() {
+        return players.length;
+    }
+
+    @Override
+    public UUID getPlayer(int i) {
+        return players[i];
+    }
+
+    @Override
+    public int find(UUID uuid) {
+        int i = Arrays.binarySearch(players, uuid);
+        return i >= 0 ? i : -1;
+    }
+
+    @Override
+    public void read(int i, SnapshotFormat.StatEntryConsumer consumer) {
+        YamlConfiguration playerData = YamlConfiguration.loadConfiguration(new File(backupDir, players[i] + ".yml"));
+        for (String statName : playerData.getKeys(true)) {
+            if (playerData.isConfigurationSection(statName)) continue;
+            int index = catalog.indexOf(statName.replace('.', ':'));
+            if (index >= 0) consumer.accept(index, playerData.getInt(statName));
+        }
+    }
+
+    /**
+     * Compares every player file with {@link YamlBackupWriter#CHECKSUM_FILE}. Backups from before checksums were
+     * recorded are checked by parsing each file instead.
+     */
+    @Override
+    public List<UUID> verify() throws IOException {
+        File checksumFile = new File(backupDir, YamlBackupWriter.CHECKSUM_FILE);
+        Map<UUID, Long> checksums = new HashMap<>();
+        if (checksumFile.isFile()) {
+            for (String line : Files.readAllLines(checksumFile.toPath(), StandardCharsets.UTF_8)) {
+                String[] fields = line.split(" ");
+                if (fields.length != 2) throw new IOException("Damaged checksum list in " + backupDir.getName());
+                try {
+                    checksums.put(UUID.fromString(fields[0]), Long.parseLong(fields[1], 16));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Damaged checksum list in " + backupDir.getName(), e);
+                }
+            }
+        }
+        boolean hasChecksums = checksumFile.isFile();
+        List<UUID> damaged = Arrays.stream(players).parallel()
+                .filter(uuid -> !isIntact(uuid, hasChecksums ? checksums.getOrDefault(uuid, -1L) : null))
+                .collect(Collectors.toCollection(ArrayList::new));
+        for (UUID uuid : checksums.keySet()) {
+            if (Arrays.binarySearch(players, uuid) < 0) damaged.add(uuid);
+        }
+        return damaged;
+    }
+
+    /**
+     * @param expected the recorded CRC32, -1 if the file is missing from the list, or null to parse the file instead
+     */
+    private boolean isIntact(UUID uuid, Long expected) {
+        try {
+            byte[] data = Files.readAllBytes(new File(backupDir, uuid + ".yml").toPath());
+            if (expected == null) {
+                new YamlConfiguration().loadFromString(new String(data, StandardCharsets.UTF_8));
+                return true;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            return crc.getValue() == expected;
+        } catch (IOException | InvalidConfigurationException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {}
+}
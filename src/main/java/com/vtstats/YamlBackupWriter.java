@@ -0,0 +1,70 @@
+/*
+ * VtFlyPlus - An advanced flight management plugin for your servers.
+ * Copyright (c) 2025 thangks
+ *
+ * Licensed under the MIT License.
+ * See the root of this project for more information.
+ */
+package com.vtstats;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Legacy backup layout: a folder with one {@code <uuid>.yml} per player and dotted {@code STAT.QUALIFIER} keys.
+ * {@link #CHECKSUM_FILE} lists a CRC32 of every player file as {@code <uuid> <crc hex>} lines.
+ */
+public class YamlBackupWriter implements BackupWriter {
+
+    public static final String CHECKSUM_FILE = "checksums.crc32";
+
+    private final File backupDir;
+    private final StatCatalog catalog;
+    private final StringBuilder checksums = new StringBuilder();
+    private final CRC32 crc = new CRC32();
+
+    public YamlBackupWriter(File backupDir, StatCatalog catalog) throws IOException {
+        if (!backupDir.mkdirs()) throw new IOException("Could not create backup directory: " + backupDir.getPath());
+        this.backupDir = backupDir;
+        this.catalog = catalog;
+    }
+
+    @Override
+    public byte[] encode(UUID uuid, StatVector stats) {
+        YamlConfiguration playerData = new YamlConfiguration();
+        for (int i = 0; i < stats.size(); i++) {
+            String qualifier = catalog.getQualifier(stats.keyAt(i));
+            String name = catalog.getStatistic(stats.keyAt(i)).name();
+            playerData.set(qualifier == null ? name : name + "." + qualifier, stats.valueAt(i));
+        }
+        return playerData.saveToString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void append(UUID uuid, byte[] record) throws IOException {
+        Files.write(new File(backupDir, uuid + ".yml").toPath(), record);
+        crc.reset();
+        crc.update(record);
+        checksums.append(uuid).append(' ').append(Long.toHexString(crc.getValue())).append('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        Files.write(new File(backupDir, CHECKSUM_FILE).toPath(), checksums.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void abort() {
+        File[] files = backupDir.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        backupDir.delete();
+    }
+}